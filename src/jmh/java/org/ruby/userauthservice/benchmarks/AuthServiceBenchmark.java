@@ -0,0 +1,54 @@
+package org.ruby.userauthservice.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.pojos.UserToken;
+import org.ruby.userauthservice.services.IAuthService;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+signup and login end to end (repositories, transactions, hashing, JWT) on H2.
+
+bcryptStrength=10 -> production cost, BCrypt dominates both operations
+bcryptStrength=4  -> minimum BCrypt cost, what remains is (almost) everything except hashing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthServiceBenchmark {
+
+    @Param({"10", "4"})
+    public String bcryptStrength;
+
+    private final AtomicLong signupCounter = new AtomicLong();
+    private ConfigurableApplicationContext context;
+    private IAuthService authService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("auth.password.bcrypt-strength=" + bcryptStrength);
+        authService = context.getBean(IAuthService.class);
+        authService.signup("login@ruby.org", "login", "password");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public User signup() {
+        long n = signupCounter.incrementAndGet();
+        return authService.signup("user" + n + "@ruby.org", "user" + n, "password");
+    }
+
+    @Benchmark
+    public UserToken login() {
+        return authService.login("login@ruby.org", "password");
+    }
+}
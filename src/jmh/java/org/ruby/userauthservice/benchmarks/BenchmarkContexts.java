@@ -0,0 +1,31 @@
+package org.ruby.userauthservice.benchmarks;
+
+import org.ruby.userauthservice.UserAuthServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Boots the whole application against the embedded H2 stand-in (application-h2.properties)
+on a random port, so benchmarks exercise the real beans, repositories and transactions.
+ */
+public class BenchmarkContexts {
+    private BenchmarkContexts() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        List<String> allProperties = new ArrayList<>();
+        allProperties.add("server.port=0");
+        allProperties.add("logging.level.root=WARN");
+        // benchmarks log in the same account in a tight loop, every login has to do the full work
+        allProperties.add("auth.rate-limit.enabled=false");
+        allProperties.add("auth.login.coalesce.enabled=false");
+        allProperties.addAll(List.of(properties));
+        // command line args, properties() would lose against application.properties
+        return new SpringApplicationBuilder(UserAuthServiceApplication.class)
+                .profiles("h2")
+                .run(allProperties.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+}
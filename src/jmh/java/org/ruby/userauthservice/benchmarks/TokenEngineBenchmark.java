@@ -0,0 +1,93 @@
+package org.ruby.userauthservice.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+import org.ruby.userauthservice.models.Role;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.services.RoleCatalog;
+import org.ruby.userauthservice.services.SigningKeyStore;
+import org.ruby.userauthservice.services.TokenEngine;
+import org.ruby.userauthservice.services.TokenLifetimes;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+TokenEngine vs the previous inline issue/verify code of AuthService.
+
+TokenEngine signs with an asymmetric key (@Param algorithm), the legacy methods keep the old
+per-process HS256 key, so the gap also shows the cost of ES256/RS256 over HMAC.
+
+Run with the GC profiler to get bytes allocated per operation (gc.alloc.rate.norm):
+    mvn -Pbenchmark test-compile exec:exec -Djmh.args="TokenEngineBenchmark -f 1 -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TokenEngineBenchmark {
+    // the hardcoded lifetime the legacy code used
+    private static final long TOKEN_VALIDITY_MILLIS = 10000000L;
+
+    @Param({"ES256", "RS256"})
+    public String algorithm;
+
+    private SecretKey secretKey;
+    private TokenEngine tokenEngine;
+    private User user;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        secretKey = Jwts.SIG.HS256.key().build();
+        // in memory keys, scope lookups only: neither is backed by a repository here
+        TokenLifetimes tokenLifetimes = new TokenLifetimes(TOKEN_VALIDITY_MILLIS, TOKEN_VALIDITY_MILLIS);
+        SigningKeyStore signingKeyStore = new SigningKeyStore(null, tokenLifetimes, algorithm, 0, 0, "", true);
+        signingKeyStore.init();
+        tokenEngine = new TokenEngine(signingKeyStore, new RoleCatalog(null), tokenLifetimes);
+
+        Role role = new Role();
+        role.setId(1L);
+        role.setName("DEFAULT");
+        user = new User();
+        user.setId(42L);
+        user.setRoles(List.of(role));
+
+        token = tokenEngine.issue(user, System.currentTimeMillis());
+        if (TokenEngine.expiresAt(tokenEngine.verify(token)) <= System.currentTimeMillis()) {
+            throw new IllegalStateException("exp claim did not round trip");
+        }
+    }
+
+    @Benchmark
+    public String issue() {
+        return tokenEngine.issue(user, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    public Claims verify() {
+        return tokenEngine.verify(token);
+    }
+
+    @Benchmark
+    public String legacyIssue() {
+        Long nowInMills = System.currentTimeMillis();
+        Map<String, Object> payload = Map.of(
+                "iat", nowInMills,
+                "exp", nowInMills + TOKEN_VALIDITY_MILLIS,
+                "userId", user.getId(),
+                "iss", TokenEngine.ISSUER,
+                "scope", user.getRoles().stream().map(Role::getName).toList()
+        );
+        return Jwts.builder().claims(payload).signWith(secretKey).compact();
+    }
+
+    @Benchmark
+    public Claims legacyVerify() {
+        return Jwts.parser().verifyWith(secretKey).build().parseSignedClaims(token).getPayload();
+    }
+}
@@ -0,0 +1,45 @@
+package org.ruby.userauthservice.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ruby.userauthservice.dtos.UserDTO;
+import org.ruby.userauthservice.dtos.UserMapper;
+import org.ruby.userauthservice.models.Role;
+import org.ruby.userauthservice.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UserMapperBenchmark {
+
+    @Param({"1", "5"})
+    public int roleCount;
+
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Role> roles = new ArrayList<>();
+        for (int i = 0; i < roleCount; i++) {
+            Role role = new Role();
+            role.setId((long) i);
+            role.setName("ROLE_" + i);
+            roles.add(role);
+        }
+        user = new User();
+        user.setId(1L);
+        user.setName("bench");
+        user.setEmail("bench@ruby.org");
+        user.setRoles(roles);
+    }
+
+    @Benchmark
+    public UserDTO mapToDTO() {
+        return UserMapper.mapToDTO(user);
+    }
+}
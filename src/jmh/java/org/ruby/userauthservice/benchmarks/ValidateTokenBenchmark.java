@@ -0,0 +1,55 @@
+package org.ruby.userauthservice.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+import org.ruby.userauthservice.services.IAuthService;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+DB backed vs stateless validateToken throughput.
+
+validationMode=stateful, sessionCacheSize=0      -> every call goes to the session table
+validationMode=stateful, sessionCacheSize=100000 -> session cache hits after the first call
+validationMode=stateless                         -> signature + exp + revocation set, no DB
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+public class ValidateTokenBenchmark {
+
+    @Param({"stateful", "stateless"})
+    public String validationMode;
+
+    @Param({"0", "100000"})
+    public String sessionCacheSize;
+
+    private ConfigurableApplicationContext context;
+    private IAuthService authService;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start(
+                "auth.validation.mode=" + validationMode,
+                "auth.session-cache.max-size=" + sessionCacheSize);
+        authService = context.getBean(IAuthService.class);
+        authService.signup("bench@ruby.org", "bench", "password");
+        token = authService.login("bench@ruby.org", "password").getToken();
+        if (!authService.validateToken(token).isValid()) throw new IllegalStateException("Freshly issued token did not validate");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TokenValidationResult validateToken() {
+        return authService.validateToken(token);
+    }
+}
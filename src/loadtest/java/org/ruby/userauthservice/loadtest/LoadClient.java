@@ -0,0 +1,47 @@
+package org.ruby.userauthservice.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/*
+Minimal JSON client for the AuthController endpoints, failures (including I/O errors) are reported, never thrown
+ */
+class LoadClient {
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final String baseUrl;
+
+    LoadClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    boolean signup(String email, String name, String password) {
+        HttpResponse<String> response = post("/auth/signup", "{\"email\":\"" + email + "\",\"name\":\"" + name + "\",\"password\":\"" + password + "\"}");
+        return response != null && response.statusCode() == 201;
+    }
+
+    // access token, null if the login failed
+    String login(String email, String password) {
+        HttpResponse<String> response = post("/auth/login", "{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}");
+        if (response == null || response.statusCode() != 200) return null;
+        return response.headers().firstValue("Cookie").orElse(null);
+    }
+
+    boolean validate(String token) {
+        HttpResponse<String> response = post("/auth/validateToken", "{\"token\":\"" + token + "\"}");
+        return response != null && response.statusCode() == 200;
+    }
+
+    private HttpResponse<String> post(String path, String json) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
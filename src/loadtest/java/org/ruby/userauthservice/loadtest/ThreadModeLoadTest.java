@@ -0,0 +1,124 @@
+package org.ruby.userauthservice.loadtest;
+
+import org.ruby.userauthservice.UserAuthServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Platform thread vs virtual thread request handling, closed loop.
+
+For each mode the application is started on the H2 stand-in, one user is signed up and logged in,
+then `concurrency` clients call /auth/validateToken (and /auth/login for loginPercent of the calls)
+for `durationSeconds`. Throughput and latency percentiles are printed per mode.
+
+    mvn -Ploadtest test-compile exec:exec -Dloadtest.args="concurrency=400 durationSeconds=30"
+
+Note: H2 in memory has no network round trip, so JDBC calls block far less than against MySQL.
+The gap between the two modes grows with real database latency.
+ */
+public class ThreadModeLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        // devtools would otherwise restart main() in its own class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        int concurrency = intArg(args, "concurrency", 200);
+        int durationSeconds = intArg(args, "durationSeconds", 20);
+        int warmupSeconds = intArg(args, "warmupSeconds", 5);
+        int loginPercent = intArg(args, "loginPercent", 0);
+
+        List<String> report = new ArrayList<>();
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(UserAuthServiceApplication.class)
+                    .profiles("h2")
+                    // command line args, properties() would lose against application.properties
+                    .run("--server.port=0",
+                            "--logging.level.root=WARN",
+                            "--auth.rate-limit.enabled=false",
+                            "--auth.login.coalesce.enabled=false",
+                            "--spring.threads.virtual.enabled=" + virtualThreads,
+                            "--auth.virtual-threads.max-concurrent-requests=" + Math.max(concurrency, 200))) {
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                LoadClient client = new LoadClient(baseUrl);
+                client.signup("load@ruby.org", "load", "password");
+                String token = client.login("load@ruby.org", "password");
+
+                run(client, token, concurrency, warmupSeconds, loginPercent);
+                Result result = run(client, token, concurrency, durationSeconds, loginPercent);
+                report.add(String.format("%-8s threads: %8.0f req/s  p50 %7.2f ms  p99 %7.2f ms  p99.9 %7.2f ms  errors %d",
+                        virtualThreads ? "virtual" : "platform", result.throughput(),
+                        result.percentileMillis(50), result.percentileMillis(99), result.percentileMillis(99.9),
+                        result.errors()));
+            }
+        }
+        System.out.printf("concurrency=%d durationSeconds=%d loginPercent=%d%n", concurrency, durationSeconds, loginPercent);
+        report.forEach(System.out::println);
+    }
+
+    private static Result run(LoadClient client, String token, int concurrency, int durationSeconds, int loginPercent)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(durationSeconds).toNanos();
+        long[][] latencies = new long[concurrency][];
+        AtomicLong errors = new AtomicLong();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                int clientIndex = i;
+                clients.submit(() -> {
+                    LongList samples = new LongList();
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        boolean ok = ThreadLocalRandom.current().nextInt(100) < loginPercent
+                                ? client.login("load@ruby.org", "password") != null
+                                : client.validate(token);
+                        samples.add(System.nanoTime() - start);
+                        if (!ok) errors.incrementAndGet();
+                    }
+                    latencies[clientIndex] = samples.toArray();
+                });
+            }
+        }
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all, durationSeconds, errors.get());
+    }
+
+    private static int intArg(String[] args, String name, int defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) return Integer.parseInt(arg.substring(name.length() + 1));
+        }
+        return defaultValue;
+    }
+
+    private record Result(long[] sortedLatencies, int durationSeconds, long errors) {
+        double throughput() {
+            return (double) sortedLatencies.length / durationSeconds;
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1_000_000.0;
+        }
+    }
+
+    private static class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.ruby.userauthservice.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.ruby.userauthservice.UserAuthServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Production-like traffic mix, open loop.
+
+1. the application is started on the H2 stand-in (h2 profile)
+2. `users` users are signed up through /auth/signup, `tokenPool` of them log in for the validate traffic
+3. requests are started at a fixed `rate` per second, each on its own virtual thread, whether or not
+   the previous ones returned (open loop: a slow server builds a backlog instead of slowing the client down).
+   Endpoints are picked at random following the profile.
+4. after `warmupSeconds`, `durationSeconds` are measured and per endpoint throughput, errors and
+   HdrHistogram latency percentiles are printed.
+
+Latency is measured from the time a request was scheduled to start, not from when it was sent,
+so queueing in the client counts (no coordinated omission).
+
+Profiles (validate/login/signup percent), or a custom mix with validate=, login=, signup=
+    production    95/4/1
+    login-heavy   70/25/5
+    validate-only 100/0/0
+
+Every `app.<property>=<value>` argument is passed to the application, e.g. to compare a setting:
+
+    mvn -Ploadtest test-compile exec:exec -Dloadtest.main=org.ruby.userauthservice.loadtest.TrafficMixLoadTest \
+        -Dloadtest.args="profile=production rate=500 users=200 durationSeconds=30 app.auth.session.write-behind.enabled=true"
+
+Requests still in flight beyond `maxInFlight` are not started, so an overloaded server shows up as
+dropped requests instead of an out of memory client. A dropped request still counts: it is an error of
+its endpoint and recorded at the histogram ceiling (1 minute), so the percentiles never look better
+because the slowest requests were not sent.
+Rate limiting is disabled (all traffic comes from one address). Password hashing runs at the
+production cost unless bcryptStrength is given, which makes seeding slow for large `users`.
+ */
+public class TrafficMixLoadTest {
+    private static final Map<String, int[]> PROFILES = Map.of(
+            "production", new int[]{95, 4, 1},
+            "login-heavy", new int[]{70, 25, 5},
+            "validate-only", new int[]{100, 0, 0});
+    private static final String PASSWORD = "password";
+    // 1 microsecond .. 1 minute, 3 significant digits
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    public static void main(String[] args) throws Exception {
+        // devtools would otherwise restart main() in its own class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        int[] mix = PROFILES.getOrDefault(arg(args, "profile", "production"), PROFILES.get("production")).clone();
+        mix[0] = Integer.parseInt(arg(args, "validate", String.valueOf(mix[0])));
+        mix[1] = Integer.parseInt(arg(args, "login", String.valueOf(mix[1])));
+        mix[2] = Integer.parseInt(arg(args, "signup", String.valueOf(mix[2])));
+        int rate = Integer.parseInt(arg(args, "rate", "200"));
+        int users = Integer.parseInt(arg(args, "users", "100"));
+        int tokenPool = Math.min(users, Integer.parseInt(arg(args, "tokenPool", "100")));
+        int warmupSeconds = Integer.parseInt(arg(args, "warmupSeconds", "5"));
+        int durationSeconds = Integer.parseInt(arg(args, "durationSeconds", "20"));
+        int maxInFlight = Integer.parseInt(arg(args, "maxInFlight", "10000"));
+        String bcryptStrength = arg(args, "bcryptStrength", null);
+
+        List<String> appArgs = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--logging.level.root=WARN",
+                "--auth.rate-limit.enabled=false"));
+        if (bcryptStrength != null) appArgs.add("--auth.password.bcrypt-strength=" + bcryptStrength);
+        for (String arg : args) {
+            if (arg.startsWith("app.")) appArgs.add("--" + arg.substring("app.".length()));
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(UserAuthServiceApplication.class)
+                .profiles("h2")
+                .run(appArgs.toArray(String[]::new))) {
+            LoadClient client = new LoadClient("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            String[] tokens = seed(client, users, tokenPool);
+
+            Traffic warmup = new Traffic(client, mix, users, tokens);
+            warmup.run(rate, warmupSeconds, maxInFlight);
+            Traffic measured = new Traffic(client, mix, users, tokens);
+            measured.run(rate, durationSeconds, maxInFlight);
+
+            System.out.printf("mix validate/login/signup=%d/%d/%d rate=%d/s users=%d durationSeconds=%d %s%n",
+                    mix[0], mix[1], mix[2], rate, users, durationSeconds, String.join(" ", appArgs));
+            measured.report(durationSeconds);
+        }
+    }
+
+    private static String[] seed(LoadClient client, int users, int tokenPool) throws InterruptedException {
+        long startedAt = System.nanoTime();
+        AtomicInteger failures = new AtomicInteger();
+        String[] tokens = new String[tokenPool];
+        try (ExecutorService seeders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2)) {
+            for (int i = 0; i < users; i++) {
+                int user = i;
+                seeders.submit(() -> {
+                    if (!client.signup(email(user), "user" + user, PASSWORD)) failures.incrementAndGet();
+                });
+            }
+        }
+        try (ExecutorService seeders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2)) {
+            for (int i = 0; i < tokenPool; i++) {
+                int user = i;
+                seeders.submit(() -> tokens[user] = client.login(email(user), PASSWORD));
+            }
+        }
+        System.out.printf("seeded %d users (%d failed) and %d tokens in %.1f s%n", users, failures.get(), tokenPool,
+                (System.nanoTime() - startedAt) / 1e9);
+        return tokens;
+    }
+
+    private static String email(int user) {
+        return "load-" + user + "@ruby.org";
+    }
+
+    private static String arg(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) return arg.substring(name.length() + 1);
+        }
+        return defaultValue;
+    }
+
+    private static class Traffic {
+        private static final AtomicInteger SIGNUPS = new AtomicInteger();
+
+        private final LoadClient client;
+        private final int[] mix;
+        private final int users;
+        private final String[] tokens;
+        private final Endpoint validate = new Endpoint("validateToken");
+        private final Endpoint login = new Endpoint("login");
+        private final Endpoint signup = new Endpoint("signup");
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Traffic(LoadClient client, int[] mix, int users, String[] tokens) {
+            this.client = client;
+            this.mix = mix;
+            this.users = users;
+            this.tokens = tokens;
+        }
+
+        void run(int rate, int durationSeconds, int maxInFlight) throws InterruptedException {
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long total = (long) rate * durationSeconds;
+            long start = System.nanoTime();
+            try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (long i = 0; i < total; i++) {
+                    long scheduledAt = start + i * intervalNanos;
+                    long wait = scheduledAt - System.nanoTime();
+                    if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+                    Endpoint endpoint = pick(ThreadLocalRandom.current());
+                    if (inFlight.get() >= maxInFlight) {
+                        dropped.incrementAndGet();
+                        endpoint.recordDropped();
+                        continue;
+                    }
+                    inFlight.incrementAndGet();
+                    requests.submit(() -> {
+                        try {
+                            send(endpoint, scheduledAt);
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    });
+                }
+            }
+        }
+
+        // picked before the in flight check, so a dropped request is charged to its endpoint
+        private Endpoint pick(ThreadLocalRandom random) {
+            int pick = random.nextInt(mix[0] + mix[1] + mix[2]);
+            if (pick < mix[0]) return validate;
+            return pick < mix[0] + mix[1] ? login : signup;
+        }
+
+        private void send(Endpoint endpoint, long scheduledAt) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (endpoint == validate) {
+                String token = tokens[random.nextInt(tokens.length)];
+                validate.record(scheduledAt, token != null && client.validate(token));
+            } else if (endpoint == login) {
+                login.record(scheduledAt, client.login(email(random.nextInt(users)), PASSWORD) != null);
+            } else {
+                int user = SIGNUPS.incrementAndGet();
+                signup.record(scheduledAt, client.signup("load-new-" + user + "@ruby.org", "new" + user, PASSWORD));
+            }
+        }
+
+        void report(int durationSeconds) {
+            System.out.printf("%-14s %9s %10s %8s %9s %9s %9s %9s %9s%n",
+                    "endpoint", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            Histogram all = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            long errors = 0;
+            for (Endpoint endpoint : List.of(validate, login, signup)) {
+                endpoint.print(endpoint.histogram, endpoint.errors.get(), durationSeconds);
+                all.add(endpoint.histogram);
+                errors += endpoint.errors.get();
+            }
+            new Endpoint("all").print(all, errors, durationSeconds);
+            System.out.printf("dropped (more than maxInFlight outstanding, included above as errors at %d s): %d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(HIGHEST_TRACKABLE_NANOS), dropped.get());
+        }
+    }
+
+    private static class Endpoint {
+        private final String name;
+        private final Histogram histogram = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        private final AtomicLong errors = new AtomicLong();
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        void record(long scheduledAt, boolean ok) {
+            histogram.recordValue(Math.min(System.nanoTime() - scheduledAt, HIGHEST_TRACKABLE_NANOS));
+            if (!ok) errors.incrementAndGet();
+        }
+
+        void recordDropped() {
+            histogram.recordValue(HIGHEST_TRACKABLE_NANOS);
+            errors.incrementAndGet();
+        }
+
+        void print(Histogram histogram, long errors, int durationSeconds) {
+            System.out.printf("%-14s %9d %10.1f %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+                    histogram.getTotalCount(), (double) histogram.getTotalCount() / durationSeconds, errors,
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1e6);
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.ruby.userauthservice.configurations;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+
+/*
+Populates createdAt / lastUpdatedAt of BaseModel.
+lastUpdatedAt is what the revocation set uses to pick up sessions that changed state.
+ */
+@Configuration
+@EnableJpaAuditing
+public class JpaAuditingConfig {
+}
@@ -0,0 +1,83 @@
+package org.ruby.userauthservice.configurations;
+
+import org.ruby.userauthservice.utils.PasswordHashCalibrator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+
+@Configuration
+public class PasswordEncoderConfig {
+    private static final Logger log = LoggerFactory.getLogger(PasswordEncoderConfig.class);
+    // OWASP minimums, calibration never goes below them
+    private static final int MIN_BCRYPT_STRENGTH = 10;
+    private static final int MAX_BCRYPT_STRENGTH = 16;
+    private static final int MIN_ARGON2_ITERATIONS = 2;
+    private static final int MAX_ARGON2_ITERATIONS = 20;
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+
+    /*
+    Versioned hashes: new passwords are stored as "{bcrypt}$2a$..." or "{argon2}$argon2id$...",
+    auth.password.algorithm picks the one used for encoding, both are accepted by matches().
+    Hashes without a prefix (stored before the prefixes existed) are BCrypt.
+
+    Cost
+    bcrypt -> auth.password.bcrypt-strength, log2 of the number of rounds
+    argon2 -> auth.password.argon2.iterations, with memory-kib and parallelism fixed
+    0 means: measure this host at startup and take the highest cost whose verification stays
+    within auth.password.target-verify-ms (see PasswordHashCalibrator).
+
+    A successful login with a hash of another algorithm or a lower cost re-hashes the password
+    with the current settings (AuthService.rehashIfOutdated), so raising the cost or switching to
+    Argon2 needs no migration. Costs are never lowered that way: on a cluster of differently fast
+    hosts, pin the cost explicitly so all instances encode with the same one.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${auth.password.algorithm:bcrypt}") String algorithm,
+                                           @Value("${auth.password.bcrypt-strength:0}") int bcryptStrength,
+                                           @Value("${auth.password.argon2.iterations:0}") int argon2Iterations,
+                                           @Value("${auth.password.argon2.memory-kib:19456}") int argon2MemoryKib,
+                                           @Value("${auth.password.argon2.parallelism:1}") int argon2Parallelism,
+                                           @Value("${auth.password.target-verify-ms:250}") long targetVerifyMillis) {
+        if (!algorithm.equals("bcrypt") && !algorithm.equals("argon2")) {
+            throw new IllegalArgumentException("Unsupported password algorithm " + algorithm);
+        }
+        boolean argon2 = algorithm.equals("argon2");
+        if (bcryptStrength <= 0) {
+            bcryptStrength = argon2
+                    ? MIN_BCRYPT_STRENGTH
+                    : PasswordHashCalibrator.calibrate(BCryptPasswordEncoder::new,
+                    MIN_BCRYPT_STRENGTH, MAX_BCRYPT_STRENGTH, targetVerifyMillis, 2.0);
+        }
+        if (argon2Iterations <= 0) {
+            argon2Iterations = !argon2
+                    ? MIN_ARGON2_ITERATIONS
+                    : PasswordHashCalibrator.calibrate(iterations -> argon2(argon2MemoryKib, argon2Parallelism, iterations),
+                    MIN_ARGON2_ITERATIONS, MAX_ARGON2_ITERATIONS, targetVerifyMillis, 0.0);
+        }
+        if (argon2) {
+            log.info("Passwords are hashed with argon2id, m={} KiB, t={}, p={}", argon2MemoryKib, argon2Iterations, argon2Parallelism);
+        } else {
+            log.info("Passwords are hashed with bcrypt, strength {}", bcryptStrength);
+        }
+
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(algorithm, Map.of(
+                "bcrypt", bcrypt,
+                "argon2", argon2(argon2MemoryKib, argon2Parallelism, argon2Iterations)));
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return passwordEncoder;
+    }
+
+    private static Argon2PasswordEncoder argon2(int memoryKib, int parallelism, int iterations) {
+        return new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH, parallelism, memoryKib, iterations);
+    }
+}
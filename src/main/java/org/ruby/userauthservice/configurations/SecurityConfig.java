@@ -1,16 +1,52 @@
 package org.ruby.userauthservice.configurations;
 
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.MacAlgorithm;
+import org.ruby.userauthservice.filters.AccessTokenAuthenticationFilter;
+import org.ruby.userauthservice.services.IAuthService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
-
-import javax.crypto.SecretKey;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 
 @Configuration
 public class SecurityConfig {
+    public static final String ADMIN_ROLE = "ADMIN";
+
+    /*
+    Admin endpoints: only for an access token of a user with the ADMIN role (AccessTokenAuthenticationFilter),
+    401 without one, 403 with a token of another user.
+    /auth/signup/bulk creates users without any per-user check, it is denied to everyone
+    unless auth.signup.bulk.enabled=true.
+    /actuator/metrics and /actuator/prometheus expose user counts and latencies per outcome, only
+    /actuator/health stays open for load balancers.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain adminFilterChain(HttpSecurity http, IAuthService authService,
+                                                @Value("${auth.signup.bulk.enabled:false}") boolean bulkSignupEnabled) throws Exception {
+        http
+                .securityMatcher("/auth/signup/bulk", "/actuator/**")
+                .csrf(csrf -> csrf.disable())
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .addFilterBefore(new AccessTokenAuthenticationFilter(authService), AnonymousAuthenticationFilter.class)
+                .authorizeHttpRequests(authorizeRequests -> {
+                    authorizeRequests.requestMatchers("/actuator/health", "/actuator/health/**").permitAll();
+                    authorizeRequests.requestMatchers("/actuator/**").hasRole(ADMIN_ROLE);
+                    if (bulkSignupEnabled) authorizeRequests.anyRequest().hasRole(ADMIN_ROLE);
+                    else authorizeRequests.anyRequest().denyAll();
+                })
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .httpBasic(basic -> basic.disable())
+                .formLogin(form -> form.disable());
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -27,11 +63,4 @@ public class SecurityConfig {
 
     }
 
-    @Bean
-    public SecretKey secretKey() {
-        MacAlgorithm algorithm = Jwts.SIG.HS256;
-        SecretKey secretKey = algorithm.key().build();
-        return secretKey;
-    }
-
 }
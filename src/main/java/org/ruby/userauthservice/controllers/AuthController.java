@@ -1,11 +1,17 @@
 package org.ruby.userauthservice.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.ruby.userauthservice.dtos.*;
 import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
 import org.ruby.userauthservice.pojos.UserToken;
 import org.ruby.userauthservice.services.IAuthService;
+import org.ruby.userauthservice.services.IBulkSignupService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
@@ -13,15 +19,31 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
+    public static final String REFRESH_TOKEN_HEADER = "Refresh-Token";
 
     private final IAuthService authService;
+    private final IBulkSignupService bulkSignupService;
+    private final ObjectReader signupRequestReader;
+    private final int maxTokensPerBatch;
 
-    public AuthController(IAuthService authService) {
+    public AuthController(IAuthService authService, IBulkSignupService bulkSignupService, ObjectMapper objectMapper,
+                          @Value("${auth.validation.batch.max-tokens:1000}") int maxTokensPerBatch) {
         this.authService = authService;
+        this.bulkSignupService = bulkSignupService;
+        this.signupRequestReader = objectMapper.readerFor(SignupRequestDTO.class);
+        this.maxTokensPerBatch = maxTokensPerBatch;
     }
     /*
     1. Register User
@@ -73,6 +95,26 @@ public class AuthController {
 
     }
 
+    /*
+    Bulk signup
+        /signup/bulk
+        -Type: POST
+        -Request: JSON array of SignupRequestDTO, or NDJSON (one SignupRequestDTO per line)
+        -Return: BulkSignupResponseDTO, status per user (CREATED, ALREADY_EXISTS, INVALID, FAILED) + throughput
+        -Auth: off unless auth.signup.bulk.enabled=true, then an access token of an ADMIN user (SecurityConfig)
+
+        The body is read as a stream (MappingIterator reads one user at a time for both formats),
+        so tens of thousands of users never sit in memory as a single list.
+     */
+    @PostMapping(value = "/signup/bulk",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkSignupResponseDTO> bulkSignup(HttpServletRequest request) throws IOException {
+        try (InputStream body = request.getInputStream();
+             MappingIterator<SignupRequestDTO> users = signupRequestReader.readValues(body)) {
+            return new ResponseEntity<>(bulkSignupService.signup(users, request.getRemoteAddr()), HttpStatus.OK);
+        }
+    }
+
     @PostMapping("/login")
     public ResponseEntity<UserDTO> login(@RequestBody LoginRequestDTO loginRequestDTO) {
          /*
@@ -87,40 +129,115 @@ public class AuthController {
              */
 
         UserToken loggedInUser = authService.login(loginRequestDTO.getEmail(), loginRequestDTO.getPassword());
+        return tokenResponse(loggedInUser);
+
+    }
+
+    /*
+    Refresh
+        /refresh
+        -Type: POST
+        -Request: RefreshRequestDTO (refreshToken from the Refresh-Token header of login / the last refresh)
+        -Return: same as login, new access token in the headers, new refresh token in Refresh-Token
+        -Status: 200, 401 if the refresh token is unknown, expired, revoked or was already used
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<UserDTO> refresh(@RequestBody RefreshRequestDTO refreshRequestDTO) {
+        return tokenResponse(authService.refresh(refreshRequestDTO.getRefreshToken()));
+    }
+
+    /*
+    Logout
+        /logout
+        -Type: POST
+        -Request: LogoutRequestDTO (token, optional refreshToken)
+        -Status: 204, also for tokens that are unknown or already logged out,
+                 the refresh token family of the session is revoked as well
+                 401 if refreshToken belongs to another user than token
+
+    Logout everywhere
+        /logoutAll
+        -Type: POST
+        -Request: LogoutRequestDTO (token, must be valid)
+        -Status: 204, every session and refresh token of the user is revoked
+                 401 if the token is not valid
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody LogoutRequestDTO logoutRequestDTO) {
+        authService.logout(logoutRequestDTO.getToken(), logoutRequestDTO.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/logoutAll")
+    public ResponseEntity<Void> logoutAll(@RequestBody LogoutRequestDTO logoutRequestDTO) {
+        authService.logoutAll(logoutRequestDTO.getToken());
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<UserDTO> tokenResponse(UserToken userToken) {
         MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
         /*
             cookie, token
             cookie, session id
             cookie, something else...
         */
-        headers.add("Authorization Bearer", loggedInUser.getToken());
-        headers.add(HttpHeaders.COOKIE, loggedInUser.getToken());
+        // "Authorization Bearer" is not a valid header name, strict HTTP clients reject the whole response
+        headers.add(HttpHeaders.AUTHORIZATION, "Bearer " + userToken.getToken());
+        headers.add(HttpHeaders.COOKIE, userToken.getToken());
+        headers.add(REFRESH_TOKEN_HEADER, userToken.getRefreshToken());
         HttpHeaders responseHeaders = new HttpHeaders(headers);
 
-        return new ResponseEntity<>(
-                UserMapper.mapToDTO(loggedInUser.getUser()),
-                responseHeaders,
-                HttpStatus.OK
-        );
-
+        return ResponseEntity.ok()
+                .headers(responseHeaders)
+                .cacheControl(CacheControl.noStore())
+                .body(UserMapper.mapToDTO(userToken.getUser()));
     }
 
     /*
         Input : Token
-        Output: boolean
+        Output: TokenValidationDTO (valid, reason, userId, scope, expiresAt, maxAgeSeconds)
         Type: POST because we will send token in request body
 
+        200 + Cache-Control: private, max-age=<maxAgeSeconds> if the token is valid,
+            so resource servers can reuse the result (and its claims) instead of calling again
+        401 + Cache-Control: no-store with the reason otherwise.
+        An invalid token is a normal answer here, not an exception.
          */
 
     @PostMapping("/validateToken")
-    public ResponseEntity<String> validateToken(@RequestBody ValidateTokenDTO validateTokenDTO) {
-        Boolean result = authService.validateToken(validateTokenDTO.getToken());
+    public ResponseEntity<TokenValidationDTO> validateToken(@RequestBody ValidateTokenDTO validateTokenDTO) {
+        TokenValidationResult result = authService.validateToken(validateTokenDTO.getToken());
+        TokenValidationDTO body = TokenValidationMapper.mapToDTO(result);
+        if (!result.isValid()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .cacheControl(CacheControl.noStore())
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(result.getMaxAgeSeconds(), TimeUnit.SECONDS).cachePrivate())
+                .body(body);
+    }
 
-        if (result == false) {
-            throw new RuntimeException("Invalid token");
-        } else {
-            return new ResponseEntity<>("Token is valid", HttpStatus.OK);
+    /*
+    Batch validation for gateways
+        /validateTokens
+        -Type: POST
+        -Request: ValidateTokensDTO, list of tokens (at most auth.validation.batch.max-tokens)
+        -Return: ValidateTokensResponseDTO, one result per token in request order
+            -valid, reason, userId, scope, expiresAt
+        -Status: 200 even if some tokens are invalid, 400 for an empty or too large batch
+     */
+    @PostMapping("/validateTokens")
+    public ResponseEntity<ValidateTokensResponseDTO> validateTokens(@RequestBody ValidateTokensDTO validateTokensDTO) {
+        List<String> tokens = validateTokensDTO.getTokens();
+        if (tokens == null || tokens.isEmpty() || tokens.size() > maxTokensPerBatch) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
+        ValidateTokensResponseDTO response = new ValidateTokensResponseDTO();
+        response.setResults(authService.validateTokens(tokens).stream()
+                .map(TokenValidationMapper::mapToDTO)
+                .toList());
+        return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
 
@@ -1,8 +1,15 @@
 package org.ruby.userauthservice.controllers;
 
+import org.ruby.userauthservice.exceptions.AuthServiceBusyException;
 import org.ruby.userauthservice.exceptions.IncorrectPasswordException;
+import org.ruby.userauthservice.exceptions.InvalidRefreshTokenException;
+import org.ruby.userauthservice.exceptions.InvalidTokenException;
+import org.ruby.userauthservice.exceptions.TooManyRequestsException;
 import org.ruby.userauthservice.exceptions.UserAlreadyExistException;
 import org.ruby.userauthservice.exceptions.UserNotRegisteredException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -23,6 +30,30 @@ public class AuthControllerAdvice {
         return ex.getMessage();
     }
 
+    @ExceptionHandler(AuthServiceBusyException.class)
+    public ResponseEntity<String> handleAuthServiceBusyException(AuthServiceBusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequestsException(TooManyRequestsException ex) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<String> handleInvalidRefreshTokenException(InvalidRefreshTokenException ex) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidTokenException.class)
+    public ResponseEntity<String> handleInvalidTokenException(InvalidTokenException ex) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ex.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public String handleRuntimeException(RuntimeException ex) {
         return "An unexpected error occurred: " + ex.getMessage();
@@ -0,0 +1,67 @@
+package org.ruby.userauthservice.controllers;
+
+import io.jsonwebtoken.security.Jwks;
+import org.ruby.userauthservice.services.SigningKeyStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+Public keys of every ACTIVE signing key as a JWK Set (RFC 7517), for resource servers that
+verify our tokens themselves instead of calling /auth/validateToken.
+
+The JSON is built once per key set (SigningKeyStore swaps the KeySet instance on every change)
+and served with Cache-Control: public, max-age=auth.signing.jwks-max-age-seconds.
+Keep that below auth.signing.publish-ahead-ms so caches pick up a new key before it signs.
+ */
+@RestController
+public class JwksController {
+    private final SigningKeyStore signingKeyStore;
+    private final ObjectMapper objectMapper;
+    private final CacheControl cacheControl;
+    private volatile CachedJwks cachedJwks;
+
+    public JwksController(SigningKeyStore signingKeyStore, ObjectMapper objectMapper,
+                          @Value("${auth.signing.jwks-max-age-seconds:60}") long maxAgeSeconds) {
+        this.signingKeyStore = signingKeyStore;
+        this.objectMapper = objectMapper;
+        this.cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic();
+    }
+
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> jwks() {
+        SigningKeyStore.KeySet keySet = signingKeyStore.keySet();
+        CachedJwks cached = cachedJwks;
+        if (cached == null || cached.keySet() != keySet) {
+            cached = new CachedJwks(keySet, toJson(keySet));
+            cachedJwks = cached;
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).body(cached.json());
+    }
+
+    private String toJson(SigningKeyStore.KeySet keySet) {
+        List<Map<String, Object>> keys = new ArrayList<>();
+        for (SigningKeyStore.LoadedKey key : keySet.keys()) {
+            // public parameters only (kty, crv/x/y or n/e), never the private key
+            keys.add(new LinkedHashMap<>(Jwks.builder().key(key.publicKey())
+                    .id(key.kid())
+                    .algorithm(key.algorithm().getId())
+                    .publicKeyUse("sig")
+                    .build()));
+        }
+        return objectMapper.writeValueAsString(Map.of("keys", keys));
+    }
+
+    private record CachedJwks(SigningKeyStore.KeySet keySet, String json) {
+    }
+}
@@ -0,0 +1,21 @@
+package org.ruby.userauthservice.dtos;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class BulkSignupResponseDTO {
+    private int total;
+    private int created;
+    private int alreadyExists;
+    private int invalid;
+    private int failed;
+    private long durationMillis;
+    // created users per second of wall clock time
+    private double usersPerSecond;
+    // set if the request body could not be read till the end, rows before that are processed
+    private String error;
+    private List<BulkSignupRowDTO> rows = new ArrayList<>();
+}
@@ -0,0 +1,16 @@
+package org.ruby.userauthservice.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSignupRowDTO {
+    // position of the user in the request, starting at 0
+    private int index;
+    private String email;
+    private BulkSignupStatus status;
+    private String message;
+}
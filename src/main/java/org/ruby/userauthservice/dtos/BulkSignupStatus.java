@@ -0,0 +1,8 @@
+package org.ruby.userauthservice.dtos;
+
+public enum BulkSignupStatus {
+    CREATED,
+    ALREADY_EXISTS,
+    INVALID,
+    FAILED
+}
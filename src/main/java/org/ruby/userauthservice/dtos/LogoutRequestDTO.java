@@ -0,0 +1,11 @@
+package org.ruby.userauthservice.dtos;
+
+import lombok.Data;
+
+@Data
+public class LogoutRequestDTO {
+    // access token of the session to end
+    private String token;
+    // optional, the family of the session is revoked anyway; must belong to the same user (logout only)
+    private String refreshToken;
+}
@@ -0,0 +1,8 @@
+package org.ruby.userauthservice.dtos;
+
+import lombok.Data;
+
+@Data
+public class RefreshRequestDTO {
+    private String refreshToken;
+}
@@ -0,0 +1,18 @@
+package org.ruby.userauthservice.dtos;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TokenValidationDTO {
+    private boolean valid;
+    // valid, expired, bad_signature, revoked, unknown_session
+    private String reason;
+    private Long userId;
+    private List<String> scope;
+    // epoch millis
+    private Long expiresAt;
+    // how long this result may be reused, 0 for invalid tokens
+    private long maxAgeSeconds;
+}
@@ -0,0 +1,22 @@
+package org.ruby.userauthservice.dtos;
+
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+
+public class TokenValidationMapper {
+    private TokenValidationMapper() {
+    }
+
+    public static TokenValidationDTO mapToDTO(TokenValidationResult result) {
+        if (result == null) {
+            return null;
+        }
+        TokenValidationDTO tokenValidationDTO = new TokenValidationDTO();
+        tokenValidationDTO.setValid(result.isValid());
+        tokenValidationDTO.setReason(result.getOutcome().getTag());
+        tokenValidationDTO.setUserId(result.getUserId());
+        tokenValidationDTO.setScope(result.getScope());
+        tokenValidationDTO.setExpiresAt(result.getExpiresAt() > 0 ? result.getExpiresAt() : null);
+        tokenValidationDTO.setMaxAgeSeconds(result.getMaxAgeSeconds());
+        return tokenValidationDTO;
+    }
+}
@@ -0,0 +1,10 @@
+package org.ruby.userauthservice.dtos;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ValidateTokensDTO {
+    private List<String> tokens;
+}
@@ -0,0 +1,11 @@
+package org.ruby.userauthservice.dtos;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ValidateTokensResponseDTO {
+    // same order as the tokens of the request
+    private List<TokenValidationDTO> results;
+}
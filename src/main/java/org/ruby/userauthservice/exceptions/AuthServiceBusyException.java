@@ -0,0 +1,7 @@
+package org.ruby.userauthservice.exceptions;
+
+public class AuthServiceBusyException extends RuntimeException {
+    public AuthServiceBusyException(String message) {
+        super(message);
+    }
+}
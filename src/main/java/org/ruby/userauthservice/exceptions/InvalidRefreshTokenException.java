@@ -0,0 +1,7 @@
+package org.ruby.userauthservice.exceptions;
+
+public class InvalidRefreshTokenException extends RuntimeException {
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package org.ruby.userauthservice.exceptions;
+
+public class InvalidTokenException extends RuntimeException {
+    public InvalidTokenException(String message) {
+        super(message);
+    }
+}
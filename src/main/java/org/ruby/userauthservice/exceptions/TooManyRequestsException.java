@@ -0,0 +1,15 @@
+package org.ruby.userauthservice.exceptions;
+
+public class TooManyRequestsException extends RuntimeException {
+    // seconds the client should wait before retrying
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,50 @@
+package org.ruby.userauthservice.filters;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+import org.ruby.userauthservice.services.IAuthService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/*
+Authenticates requests to the admin endpoints with one of our own access tokens:
+"Authorization: Bearer <token>" is checked with IAuthService.validateToken, a valid token becomes an
+Authentication of its userId with ROLE_<name> for every role in its scope.
+Without a (valid) token the request stays anonymous and the rules of SecurityConfig reject it with a 401.
+
+Not a @Component: it only runs in the admin filter chain of SecurityConfig, not for every request.
+ */
+public class AccessTokenAuthenticationFilter extends OncePerRequestFilter {
+    private static final String BEARER = "Bearer ";
+
+    private final IAuthService authService;
+
+    public AccessTokenAuthenticationFilter(IAuthService authService) {
+        this.authService = authService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            TokenValidationResult result = authService.validateToken(header.substring(BEARER.length()).trim());
+            if (result.isValid()) {
+                SecurityContext context = SecurityContextHolder.createEmptyContext();
+                context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(result.getUserId(), null,
+                        result.getScope().stream().map(role -> new SimpleGrantedAuthority("ROLE_" + role)).toList()));
+                SecurityContextHolder.setContext(context);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
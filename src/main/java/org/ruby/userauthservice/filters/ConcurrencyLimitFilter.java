@@ -0,0 +1,74 @@
+package org.ruby.userauthservice.filters;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+Admission control for the virtual thread mode (spring.threads.virtual.enabled=true).
+
+With platform threads, server.tomcat.threads.max caps how many requests can wait on the
+Hikari pool. With virtual threads Tomcat accepts (almost) unlimited concurrent requests,
+and every one of them would queue on getConnection() until connection-timeout.
+
+This filter bounds in-flight requests to auth.virtual-threads.max-concurrent-requests.
+Requests that can't get a permit within auth.virtual-threads.admission-timeout-ms get a 503
+instead of piling up on the connection pool.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private final Semaphore permits;
+    private final long admissionTimeoutMillis;
+    private final Counter rejected;
+
+    public ConcurrencyLimitFilter(@Value("${auth.virtual-threads.max-concurrent-requests:200}") int maxConcurrentRequests,
+                                  @Value("${auth.virtual-threads.admission-timeout-ms:1000}") long admissionTimeoutMillis,
+                                  MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.admissionTimeoutMillis = admissionTimeoutMillis;
+        this.rejected = Counter.builder("auth.http.admission.rejected")
+                .description("Requests rejected because the in-flight limit was reached")
+                .register(meterRegistry);
+        Gauge.builder("auth.http.admission.available", permits, Semaphore::availablePermits)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.ruby.userauthservice.filters;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.ruby.userauthservice.exceptions.TooManyRequestsException;
+import org.ruby.userauthservice.services.LoginRateLimiter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/*
+Per client address throttling of /auth/login and /auth/signup (bulk included), see LoginRateLimiter.
+Rejected requests get a 429 with Retry-After before any body parsing, user lookup or BCrypt.
+A bulk signup takes one permit here for the request, its users are charged by BulkSignupService.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    private final LoginRateLimiter loginRateLimiter;
+
+    public RateLimitFilter(LoginRateLimiter loginRateLimiter) {
+        this.loginRateLimiter = loginRateLimiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith("/auth/login") && !path.startsWith("/auth/signup");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        try {
+            loginRateLimiter.checkIp(request.getRemoteAddr());
+        } catch (TooManyRequestsException e) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
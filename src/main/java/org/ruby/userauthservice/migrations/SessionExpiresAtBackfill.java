@@ -0,0 +1,55 @@
+package org.ruby.userauthservice.migrations;
+
+import org.ruby.userauthservice.models.Session;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+/*
+Fills session.expires_at for rows created before the column existed, so the SessionSweeper
+can walk (state, expires_at, id) without an `or expires_at is null` that defeats the index.
+
+Those tokens were signed with a key of an earlier run and can't validate any more, they are
+treated as expired at their creation (now if that is unknown) and swept with the others.
+
+ddl-auto=update creates the new index, the equivalent manual DDL is
+    CREATE INDEX idx_session_state_expires_at_id ON session (state, expires_at, id);
+    DROP INDEX idx_session_expires_at ON session;
+
+Rows are processed in batches of 500, can be switched off with
+auth.migrations.session-expires-at-backfill=false once all rows are migrated.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.migrations.session-expires-at-backfill", havingValue = "true", matchIfMissing = true)
+public class SessionExpiresAtBackfill implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(SessionExpiresAtBackfill.class);
+
+    private final SessionRepo sessionRepo;
+
+    public SessionExpiresAtBackfill(SessionRepo sessionRepo) {
+        this.sessionRepo = sessionRepo;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long migrated = 0;
+        List<Session> batch = sessionRepo.findTop500ByExpiresAtIsNullOrderByIdAsc();
+        while (!batch.isEmpty()) {
+            Date now = new Date();
+            for (Session session : batch) {
+                session.setExpiresAt(session.getCreatedAt() != null ? session.getCreatedAt() : now);
+            }
+            sessionRepo.saveAll(batch);
+            migrated += batch.size();
+            batch = sessionRepo.findTop500ByExpiresAtIsNullOrderByIdAsc();
+        }
+        if (migrated > 0) log.info("Backfilled expires_at for {} sessions", migrated);
+    }
+}
@@ -0,0 +1,57 @@
+package org.ruby.userauthservice.migrations;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/*
+Widens session.token to VARCHAR(1024).
+
+ES256/RS256 tokens (kid header + asymmetric signature) are longer than the 255 chars Hibernate
+created the column with, and ddl-auto=update never changes the type of an existing column.
+The equivalent manual DDL is
+    ALTER TABLE session MODIFY token VARCHAR(1024);
+
+Runs once all beans exist but before the web server accepts requests (unlike an ApplicationRunner),
+so no login can hit the narrow column. Does nothing if the column is already wide enough.
+Can be switched off with auth.migrations.session-token-widening=false.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.migrations.session-token-widening", havingValue = "true", matchIfMissing = true)
+public class SessionTokenColumnWidening implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(SessionTokenColumnWidening.class);
+    private static final int TOKEN_LENGTH = 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SessionTokenColumnWidening(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Integer size = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> tokenColumnSize(connection.getMetaData()));
+        if (size == null || size >= TOKEN_LENGTH) return;
+        jdbcTemplate.execute("alter table session modify token varchar(" + TOKEN_LENGTH + ")");
+        log.info("Widened session.token from {} to {} chars", size, TOKEN_LENGTH);
+    }
+
+    private Integer tokenColumnSize(DatabaseMetaData metaData) throws SQLException {
+        for (String table : new String[]{"session", "SESSION"}) {
+            try (ResultSet columns = metaData.getColumns(null, null, table, null)) {
+                while (columns.next()) {
+                    if ("token".equalsIgnoreCase(columns.getString("COLUMN_NAME"))) return columns.getInt("COLUMN_SIZE");
+                }
+            }
+        }
+        return null;
+    }
+}
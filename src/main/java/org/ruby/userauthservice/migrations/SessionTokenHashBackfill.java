@@ -0,0 +1,73 @@
+package org.ruby.userauthservice.migrations;
+
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/*
+Fills session.token_hash for rows created before the column existed.
+
+ddl-auto=update adds the column and the unique index, the equivalent manual DDL is
+    ALTER TABLE session ADD COLUMN token_hash VARCHAR(64);
+    CREATE UNIQUE INDEX idx_session_token_hash ON session (token_hash);
+
+The table is walked keyset paginated on id, auth.migrations.session-token-hash-backfill.batch-size rows
+at a time: one select of (id, token) past the last id, then one JDBC batch update by id, one short
+transaction per batch. No entities are loaded, and rows without a token are passed over instead of
+being selected again and again.
+Can be switched off with auth.migrations.session-token-hash-backfill=false once all rows are migrated.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.migrations.session-token-hash-backfill", havingValue = "true", matchIfMissing = true)
+public class SessionTokenHashBackfill implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(SessionTokenHashBackfill.class);
+    private static final String SELECT_SQL = "select id, token from session where token_hash is null and id > ? " +
+            "order by id limit ?";
+    private static final String UPDATE_SQL = "update session set token_hash = ? where id = ? and token_hash is null";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public SessionTokenHashBackfill(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                    @Value("${auth.migrations.session-token-hash-backfill.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long migrated = 0;
+        long afterId = 0L;
+        while (true) {
+            List<LegacySession> batch = jdbcTemplate.query(SELECT_SQL,
+                    (rs, rowNum) -> new LegacySession(rs.getLong("id"), rs.getString("token")), afterId, batchSize);
+            if (batch.isEmpty()) break;
+            List<LegacySession> hashable = batch.stream().filter(session -> session.token() != null).toList();
+            if (!hashable.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, hashable,
+                        hashable.size(), (ps, session) -> {
+                            ps.setString(1, TokenHasher.sha256Hex(session.token()));
+                            ps.setLong(2, session.id());
+                        }));
+            }
+            migrated += hashable.size();
+            afterId = batch.get(batch.size() - 1).id();
+            if (batch.size() < batchSize) break;
+        }
+        if (migrated > 0) log.info("Backfilled token_hash for {} sessions", migrated);
+    }
+
+    private record LegacySession(long id, String token) {
+    }
+}
@@ -0,0 +1,43 @@
+package org.ruby.userauthservice.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+/*
+Long lived token exchanged at /auth/refresh for a new access token (and a new refresh token).
+
+state
+ACTIVE   -> can be used once
+INACTIVE -> already used (rotated), presenting it again means it leaked: the whole family is revoked
+DELETED  -> revoked
+ */
+@Entity
+@Getter
+@Setter
+@Table(name = "refresh_token", indexes = {
+        @Index(name = "idx_refresh_token_token_hash", columnList = "tokenHash", unique = true),
+        @Index(name = "idx_refresh_token_family_id", columnList = "familyId"),
+        @Index(name = "idx_refresh_token_expires_at", columnList = "expiresAt"),
+        @Index(name = "idx_refresh_token_user_id_state", columnList = "user_id, state")
+})
+public class RefreshToken extends BaseModel {
+    // SHA-256 (hex) of the token, the token itself is never stored
+    @Column(length = 64)
+    private String tokenHash;
+
+    // every refresh token descending from the same login shares the family id
+    @Column(length = 36)
+    private String familyId;
+
+    private Date expiresAt;
+
+    @ManyToOne
+    private User user;
+}
@@ -1,6 +1,7 @@
 package org.ruby.userauthservice.models;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.ManyToMany;
 import lombok.Data;
@@ -10,6 +11,7 @@ import java.util.List;
 @Data
 @Entity
 public class Role extends BaseModel {
+    @Column(unique = true)
     private String name;//Mentor, Instructor, Admin
     /*
     allowed permissions for this role
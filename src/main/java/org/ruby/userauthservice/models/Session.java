@@ -1,14 +1,45 @@
 package org.ruby.userauthservice.models;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 import lombok.Data;
 
+import java.util.Date;
+
 @Entity
 @Data
+@Table(indexes = {
+        @Index(name = "idx_session_token_hash", columnList = "tokenHash", unique = true),
+        // SessionSweeper: where state = ? and expires_at < ? order by expires_at, id
+        @Index(name = "idx_session_state_expires_at_id", columnList = "state, expiresAt, id"),
+        // logout everywhere: update ... where user_id = ? and state = 'ACTIVE'
+        @Index(name = "idx_session_user_id_state", columnList = "user_id, state")
+})
 public class Session extends BaseModel {
+    // ES256/RS256 tokens are longer than 255 chars, see SessionTokenColumnWidening
+    @Column(length = 1024)
     private String token;
 
+    /*
+    SHA-256 (hex) of the token, see TokenHasher.
+    Fixed width and uniquely indexed, all lookups go through this column instead of token.
+     */
+    @Column(length = 64)
+    private String tokenHash;
+
+    /*
+    Same instant as the exp claim of the token.
+    Drives the SessionSweeper, which expires and later purges rows in expires_at order.
+     */
+    private Date expiresAt;
+
+    // refresh token family issued with this session, logout revokes it through the access token
+    @Column(length = 36)
+    private String familyId;
+
     @ManyToOne
     private User user;
 
@@ -0,0 +1,31 @@
+package org.ruby.userauthservice.models;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/*
+Append only log of revoked token hashes, read by every instance in cluster mode (ClusterRevocationSync).
+Rows are never updated, so no state / lastUpdatedAt (and no BaseModel).
+
+tokenHash set -> that one token is revoked
+userId set    -> logout everywhere, every token of the user issued at or before createdAt is revoked
+ */
+@Data
+@Entity
+@Table(name = "session_revocation_log", indexes = {
+        @Index(name = "idx_session_revocation_log_created_at", columnList = "createdAt")
+})
+public class SessionRevocationLogEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64)
+    private String tokenHash;
+
+    private Long userId;
+
+    private Date createdAt;
+}
@@ -0,0 +1,49 @@
+package org.ruby.userauthservice.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.Date;
+
+/*
+Key pair used to sign the JWTs, see SigningKeyStore.
+
+state
+ACTIVE   -> published in /.well-known/jwks.json, tokens signed with it are accepted,
+            the newest ACTIVE key whose activatesAt has passed signs new tokens
+DELETED  -> retired after retireAfter, no token signed with it can still be unexpired
+ */
+@Getter
+@Setter
+@ToString
+@Entity
+public class SigningKey extends BaseModel {
+    // "kid" header of the tokens, RFC 7638 thumbprint of the public key
+    @Column(unique = true, length = 64)
+    private String kid;
+
+    // ES256 or RS256
+    @Column(length = 16)
+    private String algorithm;
+
+    // X.509 SubjectPublicKeyInfo, base64
+    @Column(length = 1024)
+    private String publicKey;
+
+    /*
+    PKCS#8, base64. Encrypted with AES-GCM ("v1:" prefix) when
+    auth.signing.key-encryption-key is set, plain otherwise.
+     */
+    @ToString.Exclude
+    @Column(length = 4096)
+    private String privateKey;
+
+    // published ahead of this instant so cached JWKS already contain it when it starts signing
+    private Date activatesAt;
+
+    // set when a newer key takes over: its activatesAt + token lifetime
+    private Date retireAfter;
+}
@@ -10,6 +10,7 @@ import java.util.List;
 public class User extends BaseModel {
     private String name;
     private String password;
+    @Column(unique = true)
     private String email;
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
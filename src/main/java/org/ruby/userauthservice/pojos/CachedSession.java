@@ -0,0 +1,25 @@
+package org.ruby.userauthservice.pojos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class CachedSession {
+    private final Long sessionId;
+    private final Long userId;
+    /*
+    "scope" claim of the token, returned on a cache hit without parsing the JWT again
+     */
+    private final List<String> scope;
+    /*
+    epoch millis (whole seconds) taken from the "exp" claim of the token
+     */
+    private final long expiresAt;
+    /*
+    epoch millis (whole seconds) taken from the "iat" claim, checked against logouts everywhere of the user
+     */
+    private final long issuedAt;
+}
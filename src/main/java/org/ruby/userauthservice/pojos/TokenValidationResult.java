@@ -0,0 +1,60 @@
+package org.ruby.userauthservice.pojos;
+
+import io.jsonwebtoken.Claims;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+Result of validating one token, so callers never have to parse the JWT again.
+
+userId, scope -> principal and roles, from the verified claims (or the session cache)
+expiresAt     -> "exp" of the token, epoch millis (whole seconds)
+maxAgeSeconds -> how long the caller may reuse this result without asking again:
+                 the remaining lifetime of the token, capped by auth.validation.max-age-seconds
+                 so a revocation is picked up by callers within that time
+Invalid results carry only the outcome.
+ */
+@Getter
+@AllArgsConstructor
+public class TokenValidationResult {
+    private final ValidationOutcome outcome;
+    private final Long userId;
+    private final List<String> scope;
+    private final long expiresAt;
+    private final long maxAgeSeconds;
+
+    public boolean isValid() {
+        return outcome == ValidationOutcome.VALID;
+    }
+
+    public static TokenValidationResult invalid(ValidationOutcome outcome) {
+        return new TokenValidationResult(outcome, null, Collections.emptyList(), 0L, 0L);
+    }
+
+    public static TokenValidationResult valid(Long userId, List<String> scope, long expiresAt, long maxAgeCapSeconds) {
+        long remainingSeconds = (expiresAt - System.currentTimeMillis()) / 1000;
+        return new TokenValidationResult(ValidationOutcome.VALID, userId, scope, expiresAt,
+                Math.max(0, Math.min(remainingSeconds, maxAgeCapSeconds)));
+    }
+
+    public static TokenValidationResult valid(Claims claims, long maxAgeCapSeconds) {
+        return valid(userIdOf(claims), scopeOf(claims), expiresAtOf(claims), maxAgeCapSeconds);
+    }
+
+    public static Long userIdOf(Claims claims) {
+        return claims.get("userId") instanceof Number number ? number.longValue() : null;
+    }
+
+    public static List<String> scopeOf(Claims claims) {
+        return claims.get("scope") instanceof List<?> list
+                ? list.stream().map(String::valueOf).toList()
+                : Collections.emptyList();
+    }
+
+    private static long expiresAtOf(Claims claims) {
+        return claims.getExpiration() == null ? 0L : claims.getExpiration().getTime();
+    }
+}
@@ -7,9 +7,16 @@ import org.ruby.userauthservice.models.User;
 public class UserToken {
     private User user;
     private String token;
+    private String refreshToken;
 
     public UserToken(User user, String token) {
         this.user = user;
         this.token = token;
     }
+
+    public UserToken(User user, String token, String refreshToken) {
+        this.user = user;
+        this.token = token;
+        this.refreshToken = refreshToken;
+    }
 }
@@ -0,0 +1,22 @@
+package org.ruby.userauthservice.pojos;
+
+/*
+Why a token was accepted or rejected, also the outcome tag of auth.operation{operation=validate}
+ */
+public enum ValidationOutcome {
+    VALID("valid"),
+    EXPIRED("expired"),
+    BAD_SIGNATURE("bad_signature"),
+    REVOKED("revoked"),
+    UNKNOWN_SESSION("unknown_session");
+
+    private final String tag;
+
+    ValidationOutcome(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+}
@@ -0,0 +1,12 @@
+package org.ruby.userauthservice.repositories;
+
+import java.util.Date;
+
+/*
+Keyset cursor of the SessionSweeper: rows are walked in (expiresAt, id) order.
+ */
+public interface ExpiringRow {
+    Long getId();
+
+    Date getExpiresAt();
+}
@@ -0,0 +1,60 @@
+package org.ruby.userauthservice.repositories;
+
+import org.ruby.userauthservice.models.RefreshToken;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepo extends CrudRepository<RefreshToken, Long> {
+    // refresh path: token, user and roles (scope of the new access token) in one select
+    @EntityGraph(attributePaths = {"user", "user.roles"})
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
+
+    /*
+    Conditional, so of two concurrent refreshes with the same token only one gets 1 back
+     */
+    @Modifying
+    @Transactional
+    @Query("update RefreshToken r set r.state = org.ruby.userauthservice.models.State.INACTIVE, r.lastUpdatedAt = :now " +
+            "where r.id = :id and r.state = org.ruby.userauthservice.models.State.ACTIVE")
+    int markUsed(@Param("id") Long id, @Param("now") Date now);
+
+    @Modifying
+    @Transactional
+    @Query("update RefreshToken r set r.state = org.ruby.userauthservice.models.State.DELETED, r.lastUpdatedAt = :now " +
+            "where r.familyId = :familyId and r.state <> org.ruby.userauthservice.models.State.DELETED")
+    int revokeFamily(@Param("familyId") String familyId, @Param("now") Date now);
+
+    @Modifying
+    @Transactional
+    @Query("update RefreshToken r set r.state = org.ruby.userauthservice.models.State.DELETED, r.lastUpdatedAt = :now " +
+            "where r.user.id = :userId and r.state <> org.ruby.userauthservice.models.State.DELETED")
+    int revokeByUserId(@Param("userId") Long userId, @Param("now") Date now);
+
+    @Query("select new org.ruby.userauthservice.repositories.TokenFamily(r.user.id, r.familyId) " +
+            "from RefreshToken r where r.tokenHash = :tokenHash")
+    Optional<TokenFamily> findFamilyByTokenHash(@Param("tokenHash") String tokenHash);
+
+    // retention, see SessionSweeper
+    @Query("select r.id as id, r.expiresAt as expiresAt from RefreshToken r where r.expiresAt < :cutoff " +
+            "and (r.expiresAt > :afterExpiresAt or (r.expiresAt = :afterExpiresAt and r.id > :afterId)) " +
+            "order by r.expiresAt, r.id")
+    List<ExpiringRow> findPurgeable(@Param("cutoff") Date cutoff, @Param("afterExpiresAt") Date afterExpiresAt,
+                                    @Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from RefreshToken r where r.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,14 @@
+package org.ruby.userauthservice.repositories;
+
+import java.util.Date;
+
+/*
+Projection used to build the revocation set without loading Session/User entities.
+ */
+public interface RevokedSession {
+    Long getId();
+
+    String getTokenHash();
+
+    Date getLastUpdatedAt();
+}
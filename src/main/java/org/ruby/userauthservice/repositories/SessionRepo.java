@@ -1,10 +1,98 @@
 package org.ruby.userauthservice.repositories;
 
 import org.ruby.userauthservice.models.Session;
+import org.ruby.userauthservice.models.State;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 public interface SessionRepo extends CrudRepository<Session, Long> {
-    Optional<Session> findByToken(String token);
+    Optional<Session> findByTokenHash(String tokenHash);
+
+    List<Session> findTop500ByExpiresAtIsNullOrderByIdAsc();
+
+    // logout: the device's refresh token family through its access token
+    @Query("select new org.ruby.userauthservice.repositories.TokenFamily(s.user.id, s.familyId) " +
+            "from Session s where s.tokenHash = :tokenHash")
+    Optional<TokenFamily> findFamilyByTokenHash(@Param("tokenHash") String tokenHash);
+
+    // batch validation, one IN query for all tokens of a request
+    @Query("select s.id as id, s.tokenHash as tokenHash, s.user.id as userId, s.state as state from Session s " +
+            "where s.tokenHash in :tokenHashes")
+    List<SessionStatus> findStatusByTokenHashIn(@Param("tokenHashes") Collection<String> tokenHashes);
+
+    /*
+    Initial load of the revocation set, keyset paginated on id.
+    lastUpdatedAt is null for rows written before auditing was enabled, those are included as well.
+     */
+    @Query("select s.id as id, s.tokenHash as tokenHash, s.lastUpdatedAt as lastUpdatedAt from Session s " +
+            "where s.state <> org.ruby.userauthservice.models.State.ACTIVE and s.id > :afterId " +
+            "and (s.lastUpdatedAt is null or s.lastUpdatedAt >= :since) order by s.id")
+    List<RevokedSession> findRevokedAfterId(@Param("afterId") Long afterId, @Param("since") Date since, Pageable pageable);
+
+    /*
+    Incremental refresh of the revocation set, everything that changed state since the last poll.
+     */
+    @Query("select s.id as id, s.tokenHash as tokenHash, s.lastUpdatedAt as lastUpdatedAt from Session s " +
+            "where s.state <> org.ruby.userauthservice.models.State.ACTIVE and s.lastUpdatedAt >= :since " +
+            "order by s.lastUpdatedAt")
+    List<RevokedSession> findRevokedUpdatedSince(@Param("since") Date since, Pageable pageable);
+
+    /*
+    Idempotent ACTIVE -> INACTIVE transition, rows that are already INACTIVE/DELETED are not touched.
+    lastUpdatedAt is set explicitly since bulk updates bypass JPA auditing.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Session s set s.state = org.ruby.userauthservice.models.State.INACTIVE, s.lastUpdatedAt = :now " +
+            "where s.tokenHash in :tokenHashes and s.state = org.ruby.userauthservice.models.State.ACTIVE")
+    int deactivateByTokenHashes(@Param("tokenHashes") Collection<String> tokenHashes, @Param("now") Date now);
+
+    /*
+    Logout everywhere, one statement on the (user_id, state) index however many sessions the user has
+     */
+    @Modifying
+    @Transactional
+    @Query("update Session s set s.state = org.ruby.userauthservice.models.State.INACTIVE, s.lastUpdatedAt = :now " +
+            "where s.user.id = :userId and s.state = org.ruby.userauthservice.models.State.ACTIVE")
+    int deactivateByUserId(@Param("userId") Long userId, @Param("now") Date now);
+
+    /*
+    SessionSweeper, keyset paginated on (expiresAt, id) so every batch is a short range scan of
+    idx_session_state_expires_at_id. expiresAt is never null, see SessionExpiresAtBackfill.
+     */
+    @Query("select s.id as id, s.expiresAt as expiresAt from Session s " +
+            "where s.state = org.ruby.userauthservice.models.State.ACTIVE and s.expiresAt < :now " +
+            "and (s.expiresAt > :afterExpiresAt or (s.expiresAt = :afterExpiresAt and s.id > :afterId)) " +
+            "order by s.expiresAt, s.id")
+    List<ExpiringRow> findExpiredActive(@Param("now") Date now, @Param("afterExpiresAt") Date afterExpiresAt,
+                                        @Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("update Session s set s.state = org.ruby.userauthservice.models.State.INACTIVE, s.lastUpdatedAt = :now " +
+            "where s.id in :ids and s.state = org.ruby.userauthservice.models.State.ACTIVE")
+    int deactivateByIds(@Param("ids") Collection<Long> ids, @Param("now") Date now);
+
+    // one state per walk, an equality on the leading index column keeps the range in (expiresAt, id) order
+    @Query("select s.id as id, s.expiresAt as expiresAt from Session s " +
+            "where s.state = :state and s.expiresAt < :cutoff " +
+            "and (s.expiresAt > :afterExpiresAt or (s.expiresAt = :afterExpiresAt and s.id > :afterId)) " +
+            "order by s.expiresAt, s.id")
+    List<ExpiringRow> findPurgeable(@Param("state") State state, @Param("cutoff") Date cutoff,
+                                    @Param("afterExpiresAt") Date afterExpiresAt, @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Session s where s.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,16 @@
+package org.ruby.userauthservice.repositories;
+
+import org.ruby.userauthservice.models.State;
+
+/*
+Projection used by the batch validation, state of many sessions in one select without loading entities.
+ */
+public interface SessionStatus {
+    Long getId();
+
+    String getTokenHash();
+
+    Long getUserId();
+
+    State getState();
+}
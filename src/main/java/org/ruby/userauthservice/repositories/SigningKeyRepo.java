@@ -0,0 +1,13 @@
+package org.ruby.userauthservice.repositories;
+
+import org.ruby.userauthservice.models.SigningKey;
+import org.ruby.userauthservice.models.State;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface SigningKeyRepo extends CrudRepository<SigningKey, Long> {
+    List<SigningKey> findByStateOrderByActivatesAtAsc(State state);
+}
@@ -0,0 +1,8 @@
+package org.ruby.userauthservice.repositories;
+
+/*
+Owner and refresh token family of a session or refresh token, used by logout.
+familyId is null for sessions issued before sessions recorded their family.
+ */
+public record TokenFamily(Long userId, String familyId) {
+}
@@ -0,0 +1,10 @@
+package org.ruby.userauthservice.repositories;
+
+/*
+Projection used by the bulk signup (emails -> generated ids) and to build the EmailFilter.
+ */
+public interface UserEmailId {
+    Long getId();
+
+    String getEmail();
+}
@@ -1,12 +1,51 @@
 package org.ruby.userauthservice.repositories;
 
 import org.ruby.userauthservice.models.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepo extends CrudRepository<User, Long> {
     Optional<User> findByEmail(String email);
+
+    /*
+    Login path: user, password hash and roles in one select (left join on users_roles/role),
+    so neither the scope claim nor UserMapper.mapToDTO trigger the lazy roles collection.
+
+    Why the entity and not a DTO projection: the same User is the @ManyToOne target of the session
+    and refresh token inserts and the row a rehash updates, and a projection can't fetch the roles
+    collection in the same select (a second query per login). login calls this outside a transaction,
+    so the entity is detached as soon as it is returned: no dirty checking, no flush, and the
+    response (UserDTO) is a read-only copy mapped from initialized state.
+     */
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesByEmail(String email);
+
+    // bulk signup: which of these emails are taken, and the ids of the users it just inserted, one select per chunk
+    List<UserEmailId> findByEmailIn(Collection<String> emails);
+
+    // keyset pagination over all users, used to build the EmailFilter
+    @Query("select u.id as id, u.email as email from User u where u.id > :afterId order by u.id")
+    List<UserEmailId> findEmailsAfterId(Long afterId, Pageable pageable);
+
+    /*
+    Rehash on login: only replaces the hash that was verified, a password changed in the meantime is kept
+     */
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :newPassword, u.lastUpdatedAt = :now " +
+            "where u.id = :id and u.password = :oldPassword")
+    int replacePassword(@Param("id") Long id, @Param("oldPassword") String oldPassword,
+                        @Param("newPassword") String newPassword, @Param("now") Date now);
 }
@@ -0,0 +1,55 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+Timers of the auth pipeline (signup, login, validate).
+
+auth.operation -> whole call, tags operation and outcome
+                  its count per outcome is the outcome counter, e.g.
+                  login: success | unknown_user | wrong_password | rate_limited | busy | error
+                  validate: valid | expired | bad_signature | revoked | unknown_session
+                  validate_batch: same outcomes as validate, one per token, timed from the start of the batch
+auth.phase     -> one step of a call, tags operation and phase
+                  user_lookup | bcrypt | jwt_sign | jwt_parse | session_lookup | session_write | user_write
+
+Both publish percentile histograms (management.metrics.distribution.percentiles-histogram.*),
+scraped from /actuator/prometheus (ADMIN only) next to the hikaricp.* pool metrics.
+Timers are registered once per tag combination and then reused from a map.
+ */
+@Component
+public class AuthMetrics {
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public AuthMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> T phase(String operation, String phase, Supplier<T> step) {
+        long startedAt = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            timer("auth.phase", operation, "phase", phase).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void outcome(String operation, String outcome, long startedAtNanos) {
+        timer("auth.operation", operation, "outcome", outcome)
+                .record(System.nanoTime() - startedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer timer(String name, String operation, String tagKey, String tagValue) {
+        return timers.computeIfAbsent(name + '|' + operation + '|' + tagValue, key -> Timer.builder(name)
+                .tag("operation", operation)
+                .tag(tagKey, tagValue)
+                .register(meterRegistry));
+    }
+}
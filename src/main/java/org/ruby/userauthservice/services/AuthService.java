@@ -1,39 +1,76 @@
 package org.ruby.userauthservice.services;
 
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.JwtParser;
-import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.ExpiredJwtException;
+import org.ruby.userauthservice.exceptions.AuthServiceBusyException;
 import org.ruby.userauthservice.exceptions.IncorrectPasswordException;
+import org.ruby.userauthservice.exceptions.InvalidRefreshTokenException;
+import org.ruby.userauthservice.exceptions.InvalidTokenException;
+import org.ruby.userauthservice.exceptions.TooManyRequestsException;
 import org.ruby.userauthservice.exceptions.UserAlreadyExistException;
 import org.ruby.userauthservice.exceptions.UserNotRegisteredException;
+import org.ruby.userauthservice.models.RefreshToken;
 import org.ruby.userauthservice.models.Role;
 import org.ruby.userauthservice.models.Session;
 import org.ruby.userauthservice.models.State;
 import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.pojos.CachedSession;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+import org.ruby.userauthservice.pojos.ValidationOutcome;
 import org.ruby.userauthservice.pojos.UserToken;
-import org.ruby.userauthservice.repositories.RoleRepo;
+import org.ruby.userauthservice.repositories.RefreshTokenRepo;
 import org.ruby.userauthservice.repositories.SessionRepo;
+import org.ruby.userauthservice.repositories.SessionStatus;
+import org.ruby.userauthservice.repositories.TokenFamily;
 import org.ruby.userauthservice.repositories.UserRepo;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import javax.crypto.SecretKey;
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 public class AuthService implements IAuthService {
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     private final UserRepo userRepo;
-    private final RoleRepo roleRepo;
     private final SessionRepo sessionRepo;
-    @Autowired
-    private BCryptPasswordEncoder passwordEncoder;
+    private final RefreshTokenRepo refreshTokenRepo;
+    private final TokenLifetimes tokenLifetimes;
+    private final SessionCache sessionCache;
+    private final RevocationSet revocationSet;
+    private final TokenEngine tokenEngine;
+    private final SessionWriteBehind sessionWriteBehind;
+    private final SessionRevoker sessionRevoker;
+    private final RoleCatalog roleCatalog;
+    // emails that are definitely not registered skip the user lookup
+    private final EmailFilter emailFilter;
+    private final LoginRateLimiter loginRateLimiter;
+    private final LoginCoalescer loginCoalescer;
+    private final AuthMetrics authMetrics;
+    // login writes only, the lookup and the password hashing run without a transaction
+    private final TransactionTemplate transactionTemplate;
+    /*
+    stateful  -> every validation resolves the session (cache, then DB)
+    stateless -> signature + exp verified locally, only the in memory RevocationSet is consulted
+     */
+    private final boolean statelessValidation;
+    // upper bound of the max-age callers may cache a positive validation result for
+    private final long maxAgeSeconds;
+    // password encode/matches (BCrypt or Argon2), executed off the request thread
+    private final PasswordHashingPool passwordHashingPool;
 
-    @Autowired
-    private SecretKey secretKey;
     /*
     encode(password) before saving to DB 128bit random salt and cost factor of 10 by default
     salt-> unique random value added to password before hashing to prevent rainbow table attacks
@@ -49,40 +86,82 @@ public class AuthService implements IAuthService {
      */
 
 
-    public AuthService(UserRepo userRepo, RoleRepo roleRepo, SessionRepo sessionRepo) {
+    public AuthService(UserRepo userRepo, RoleCatalog roleCatalog, SessionRepo sessionRepo,
+                       RefreshTokenRepo refreshTokenRepo, TokenLifetimes tokenLifetimes, SessionCache sessionCache,
+                       RevocationSet revocationSet, TokenEngine tokenEngine, PasswordHashingPool passwordHashingPool,
+                       SessionWriteBehind sessionWriteBehind, SessionRevoker sessionRevoker,
+                       EmailFilter emailFilter, LoginRateLimiter loginRateLimiter, LoginCoalescer loginCoalescer,
+                       AuthMetrics authMetrics, TransactionTemplate transactionTemplate,
+                       @Value("${auth.validation.mode:stateful}") String validationMode,
+                       @Value("${auth.validation.max-age-seconds:30}") long maxAgeSeconds) {
         this.userRepo = userRepo;
-        this.roleRepo = roleRepo;
+        this.roleCatalog = roleCatalog;
         this.sessionRepo = sessionRepo;
+        this.refreshTokenRepo = refreshTokenRepo;
+        this.tokenLifetimes = tokenLifetimes;
+        this.sessionCache = sessionCache;
+        this.revocationSet = revocationSet;
+        this.tokenEngine = tokenEngine;
+        this.passwordHashingPool = passwordHashingPool;
+        this.sessionWriteBehind = sessionWriteBehind;
+        this.sessionRevoker = sessionRevoker;
+        this.emailFilter = emailFilter;
+        this.loginRateLimiter = loginRateLimiter;
+        this.loginCoalescer = loginCoalescer;
+        this.authMetrics = authMetrics;
+        this.transactionTemplate = transactionTemplate;
+        this.statelessValidation = "stateless".equalsIgnoreCase(validationMode);
+        this.maxAgeSeconds = maxAgeSeconds;
     }
 
 
     @Override
     public User signup(String email, String name, String password) {
-        Optional<User> existingUser = userRepo.findByEmail(email);
-        if (existingUser.isPresent())
+        long startedAt = System.nanoTime();
+        String outcome = "error";
+        try {
+            User user = createUser(email, name, password);
+            outcome = "success";
+            return user;
+        } catch (UserAlreadyExistException e) {
+            outcome = "already_exists";
+            throw e;
+        } catch (AuthServiceBusyException e) {
+            outcome = "busy";
+            throw e;
+        } finally {
+            authMetrics.outcome("signup", outcome, startedAt);
+        }
+    }
+
+    private User createUser(String email, String name, String password) {
+        /*
+        The filter only answers "definitely not registered" or "maybe", a maybe is resolved by the DB.
+        Two concurrent signups for the same email are caught by the unique index on email.
+         */
+        if (emailFilter.mightExist(email)
+                && authMetrics.phase("signup", "user_lookup", () -> userRepo.findByEmail(email)).isPresent())
             throw new UserAlreadyExistException("User with email " + email + " already exists");
         User user = new User();
         user.setEmail(email);
         user.setName(name);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(authMetrics.phase("signup", "bcrypt", () -> passwordHashingPool.encode(password)));
         user.setState(State.ACTIVE);
         /*
         what else to set?
         Be default, user role is DEFAULT
          */
-        Role role;
-        Optional<Role> optionalRole = roleRepo.findByName("DEFAULT");
-        if (optionalRole.isPresent()) {
-            role = optionalRole.get();
-        } else {
-            role = new Role();
-            role.setName("DEFAULT");
-            roleRepo.save(role);
-        }
+        Role role = roleCatalog.getOrCreate("DEFAULT");
         List<Role> roles = new ArrayList<>();
         roles.add(role);
         user.setRoles(roles);
-        return userRepo.save(user);
+        // added before the insert, so a login right after signup can't be filtered out
+        emailFilter.add(email);
+        try {
+            return authMetrics.phase("signup", "user_write", () -> userRepo.save(user));
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistException("User with email " + email + " already exists");
+        }
     }
 
     /*
@@ -96,111 +175,434 @@ public class AuthService implements IAuthService {
      */
 
 
+    /*
+    Not @Transactional: the rate limit, the coalescing and the password check (up to
+    auth.password.hashing.timeout-ms) hold no DB connection. The user is read with its own short
+    read, the session / refresh token / rehash writes are one transaction at the end, see authenticate().
+     */
     @Override
     public UserToken login(String email, String password) {
-        Optional<User> optionalUser = userRepo.findByEmail(email);
-        if (optionalUser.isEmpty())
+        long startedAt = System.nanoTime();
+        String outcome = "error";
+        try {
+            // per account throttling counts every attempt, the per client address one is done by RateLimitFilter
+            loginRateLimiter.checkEmail(email);
+            // duplicate attempts in flight share one authentication and one token
+            UserToken userToken = loginCoalescer.login(email, password, () -> authenticate(email, password));
+            outcome = "success";
+            return userToken;
+        } catch (UserNotRegisteredException e) {
+            outcome = "unknown_user";
+            throw e;
+        } catch (IncorrectPasswordException e) {
+            outcome = "wrong_password";
+            throw e;
+        } catch (TooManyRequestsException e) {
+            outcome = "rate_limited";
+            throw e;
+        } catch (AuthServiceBusyException e) {
+            outcome = "busy";
+            throw e;
+        } finally {
+            authMetrics.outcome("login", outcome, startedAt);
+        }
+    }
+
+    private UserToken authenticate(String email, String password) {
+        /*
+        Unknown emails still pay for one BCrypt check so the response takes as long as for a
+        wrong password, the filter only saves the DB lookup.
+         */
+        Optional<User> optionalUser = emailFilter.mightExist(email)
+                ? authMetrics.phase("login", "user_lookup", () -> userRepo.findWithRolesByEmail(email))
+                : Optional.empty();
+        if (optionalUser.isEmpty()) {
+            authMetrics.phase("login", "bcrypt", () -> {
+                passwordHashingPool.matchesDummy(password);
+                return null;
+            });
             throw new UserNotRegisteredException("User with email " + email + " is not registered");
+        }
         User user = optionalUser.get();
-        if (passwordEncoder.matches(password, user.getPassword())) {
-            /*
-            Generate JWT and return user object with JWT
-             */
-            Long nowInMills = System.currentTimeMillis(); // return timestamp in epoch
-            Map<String, Object> payload = Map.of(
-                    "iat", nowInMills,
-                    "exp", nowInMills + 10000000,
-                    "userId", user.getId(),
-                    "iss", "Ruby-auth-service",
-                    "scope", user.getRoles().stream().map(Role::getName).toList()
-            );
-            /*
-            Payload is generated
-             */
-
-            String jwtToken = Jwts.builder()
-                    .setClaims(payload)
-                    .signWith(secretKey)
-                    .compact();
-              /*
-            Create a new logged in session for the user
-             */
+        if (authMetrics.phase("login", "bcrypt", () -> passwordHashingPool.matches(password, user.getPassword()))) {
+            String rehashed = rehashIfOutdated(user, password);
+            return transactionTemplate.execute(status -> {
+                if (rehashed != null) replacePassword(user, rehashed);
+                // a login starts a new refresh token family
+                return issueTokens("login", user, UUID.randomUUID().toString());
+            });
+        }
+        throw new IncorrectPasswordException("Incorrect password for user with email " + email);
+    }
+
+    /*
+    Access token (JWT + session row) and a fresh refresh token of the given family
+     */
+    private UserToken issueTokens(String operation, User user, String familyId) {
+        /*
+        Generate JWT and return user object with JWT
+         */
+        /*
+        Payload (iat, exp, userId, iss, scope) is built and signed by the TokenEngine
+         */
+        // iat has second resolution, right after a logout everywhere of the user this moves it past the cut-off
+        long nowInMillis = revocationSet.issueTime(user.getId(), System.currentTimeMillis());
+        String jwtToken = authMetrics.phase(operation, "jwt_sign", () -> tokenEngine.issue(user, nowInMillis));
+        Date expiresAt = new Date(nowInMillis + tokenLifetimes.accessMillis());
+          /*
+        Create a new logged in session for the user
+         */
+        String tokenHash = TokenHasher.sha256Hex(jwtToken);
+        authMetrics.phase(operation, "session_write", () -> {
+            if (sessionWriteBehind.isEnabled()) {
+                // inserted in the next JDBC batch, validatable right away through the pending set
+                sessionWriteBehind.enqueue(jwtToken, tokenHash, user.getId(), expiresAt, familyId);
+                return null;
+            }
             Session session = new Session();
             session.setToken(jwtToken);
+            session.setTokenHash(tokenHash);
             session.setUser(user);
             session.setState(State.ACTIVE);
-            sessionRepo.save(session);
+            session.setExpiresAt(expiresAt);
+            session.setFamilyId(familyId);
+            return sessionRepo.save(session);
+        });
 
-            /*
-            When you send this token to resources sever, it should
-            be able to self validate the token
-            I want to persist all the token that I am generating
+        /*
+        When you send this token to resources sever, it should
+        be able to self validate the token
+        I want to persist all the token that I am generating
 
-            Ideally, for storing tokens, we should create a
-            new table called as "Session"
+        Ideally, for storing tokens, we should create a
+        new table called as "Session"
 
-            Diff between Sessions and cookies
-            Session is used to store token in the backend
-            Cookies are used to store token in the browser
+        Diff between Sessions and cookies
+        Session is used to store token in the backend
+        Cookies are used to store token in the browser
 
-            Auth service is generating so many tokens for every user
-            there should be some source of truth / db where all these
-            tokens should persist
+        Auth service is generating so many tokens for every user
+        there should be some source of truth / db where all these
+        tokens should persist
 
-             */
+         */
 
-            /*
-            We also want to return this generated token back to the client?
+        /*
+        We also want to return this generated token back to the client?
 
-             */
+         */
 //            System.out.println(jwtToken);
 //            System.out.println(jwtToken.length());
-            return new UserToken(user, jwtToken);
+        String refreshToken = newRefreshToken();
+        authMetrics.phase(operation, "refresh_token_write", () -> {
+            RefreshToken stored = new RefreshToken();
+            stored.setTokenHash(TokenHasher.sha256Hex(refreshToken));
+            stored.setFamilyId(familyId);
+            stored.setUser(user);
+            stored.setState(State.ACTIVE);
+            stored.setExpiresAt(new Date(nowInMillis + tokenLifetimes.refreshMillis()));
+            return refreshTokenRepo.save(stored);
+        });
+        return new UserToken(user, jwtToken, refreshToken);
+    }
 
+    /*
+    Refresh token rotation: the presented token is used up and replaced, so a refresh costs
+    one indexed lookup, one conditional update, a signature and two inserts, no password hashing.
 
+    A refresh token that was already used is presented again -> it was copied somewhere,
+    every refresh token of its family is revoked and the client has to log in again.
+    (Access tokens already issued from the family run out on their own, they are short lived.)
+    Revocations have to be committed even though the call fails, hence noRollbackFor.
+     */
+    @Override
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public UserToken refresh(String refreshToken) {
+        long startedAt = System.nanoTime();
+        String outcome = "error";
+        try {
+            UserToken userToken = rotate(refreshToken);
+            outcome = "success";
+            return userToken;
+        } catch (InvalidRefreshTokenException e) {
+            outcome = "invalid";
+            throw e;
+        } finally {
+            authMetrics.outcome("refresh", outcome, startedAt);
         }
-        throw new IncorrectPasswordException("Incorrect password for user with email " + email);
     }
 
+    private UserToken rotate(String refreshToken) {
+        if (refreshToken == null || refreshToken.isEmpty()) throw new InvalidRefreshTokenException("Refresh token is missing");
+        String tokenHash = TokenHasher.sha256Hex(refreshToken);
+        RefreshToken stored = authMetrics.phase("refresh", "token_lookup", () -> refreshTokenRepo.findByTokenHash(tokenHash))
+                .orElseThrow(() -> new InvalidRefreshTokenException("Unknown refresh token"));
+        Date now = new Date();
+        if (stored.getState() == State.INACTIVE) {
+            refreshTokenRepo.revokeFamily(stored.getFamilyId(), now);
+            throw new InvalidRefreshTokenException("Refresh token was already used, please log in again");
+        }
+        if (stored.getState() != State.ACTIVE || stored.getExpiresAt().before(now)) {
+            throw new InvalidRefreshTokenException("Refresh token is expired or revoked, please log in again");
+        }
+        // lost against a concurrent refresh with the same token, same as a reuse
+        if (refreshTokenRepo.markUsed(stored.getId(), now) == 0) {
+            refreshTokenRepo.revokeFamily(stored.getFamilyId(), now);
+            throw new InvalidRefreshTokenException("Refresh token was already used, please log in again");
+        }
+        return issueTokens("refresh", stored.getUser(), stored.getFamilyId());
+    }
+
+    /*
+    Logout of one device: its session and the refresh token family it was issued with are revoked
+    right away, the family is found through the session row (or the write-behind queue).
+    Unknown or already revoked access tokens are fine, logging out twice is not an error.
+    A refresh token passed along (clients from before sessions recorded their family) is only
+    honoured if it belongs to the same user as the access token, anything else is rejected
+    before something is revoked.
+     */
+    @Override
+    @Transactional
+    public void logout(String token, String refreshToken) {
+        long startedAt = System.nanoTime();
+        String tokenHash = token == null || token.isEmpty() ? null : TokenHasher.sha256Hex(token);
+        Optional<TokenFamily> session = tokenHash == null ? Optional.empty() : sessionFamily(tokenHash);
+        List<String> familyIds = new ArrayList<>(2);
+        session.map(TokenFamily::familyId).ifPresent(familyIds::add);
+        if (refreshToken != null && !refreshToken.isEmpty()) {
+            Optional<TokenFamily> presented = refreshTokenRepo.findFamilyByTokenHash(TokenHasher.sha256Hex(refreshToken));
+            if (presented.isPresent()) {
+                if (session.isEmpty() || !presented.get().userId().equals(session.get().userId())) {
+                    authMetrics.outcome("logout", "invalid", startedAt);
+                    throw new InvalidRefreshTokenException("Refresh token does not belong to the user of this session");
+                }
+                familyIds.add(presented.get().familyId());
+            }
+        }
+        if (tokenHash != null) {
+            authMetrics.phase("logout", "session_write", () -> {
+                sessionRevoker.revokeNow(tokenHash);
+                return null;
+            });
+        }
+        Date now = new Date();
+        familyIds.stream().distinct().forEach(familyId -> refreshTokenRepo.revokeFamily(familyId, now));
+        authMetrics.outcome("logout", "success", startedAt);
+    }
+
+    private Optional<TokenFamily> sessionFamily(String tokenHash) {
+        Optional<TokenFamily> pending = sessionWriteBehind.pendingFamily(tokenHash);
+        return pending.isPresent() ? pending : sessionRepo.findFamilyByTokenHash(tokenHash);
+    }
+
+    /*
+    Logout everywhere: needs a valid access token of the user, revokes all of the user's sessions
+    and refresh tokens with two set-based updates, returns the number of sessions that were ACTIVE.
+     */
     @Override
-    public Boolean validateToken(String token) {
+    @Transactional
+    public int logoutAll(String token) {
+        long startedAt = System.nanoTime();
+        TokenValidationResult result = validateToken(token);
+        if (!result.isValid()) {
+            authMetrics.outcome("logout_all", "invalid", startedAt);
+            throw new InvalidTokenException("Token is " + result.getOutcome().getTag());
+        }
+        int sessions = authMetrics.phase("logout_all", "session_write", () -> sessionRevoker.revokeUser(result.getUserId()));
+        refreshTokenRepo.revokeByUserId(result.getUserId(), new Date());
+        authMetrics.outcome("logout_all", "success", startedAt);
+        return sessions;
+    }
+
+    // 256 random bits, base64url: nothing to sign, the hash lookup is the verification
+    private static String newRefreshToken() {
+        byte[] bytes = new byte[32];
+        SECURE_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /*
+    The plain password is only known right after a successful matches(), so this is where hashes
+    of an older algorithm / lower cost are upgraded (see PasswordEncoderConfig).
+    Costs one extra encode for that single login, a busy pool just postpones it to the next login.
+    Returns the new hash (null -> nothing to upgrade), it is written by replacePassword() in the login transaction.
+     */
+    private String rehashIfOutdated(User user, String password) {
+        if (!passwordHashingPool.needsRehash(user.getPassword())) return null;
+        try {
+            return authMetrics.phase("login", "rehash", () -> passwordHashingPool.encode(password));
+        } catch (AuthServiceBusyException e) {
+            // keep the old hash, still valid
+            return null;
+        }
+    }
+
+    // conditional on the old hash: a password change in between wins over the upgrade
+    private void replacePassword(User user, String rehashed) {
+        if (userRepo.replacePassword(user.getId(), user.getPassword(), rehashed, new Date()) == 1)
+            user.setPassword(rehashed);
+    }
+
+    @Override
+    public TokenValidationResult validateToken(String token) {
+        long startedAt = System.nanoTime();
+        String outcome = "error";
+        try {
+            TokenValidationResult result = validate(token);
+            outcome = result.getOutcome().getTag();
+            return result;
+        } finally {
+            authMetrics.outcome("validate", outcome, startedAt);
+        }
+    }
+
+    private TokenValidationResult validate(String token) {
+        if (token == null || token.isEmpty()) return TokenValidationResult.invalid(ValidationOutcome.BAD_SIGNATURE);
+        String tokenHash = TokenHasher.sha256Hex(token);
+        TokenValidationResult inMemory = validateInMemory(token, tokenHash);
+        if (inMemory != null) return inMemory;
+
         /*
         We want to check if this token is in my db or not?
-        in Sessions table
+        in Sessions table, looked up by the indexed digest rather than the full token
+         */
+        Optional<Session> optionalSession = authMetrics.phase("validate", "session_lookup",
+                () -> sessionRepo.findByTokenHash(tokenHash));
+        if (optionalSession.isEmpty()) return TokenValidationResult.invalid(ValidationOutcome.UNKNOWN_SESSION);
+        Session session = optionalSession.get();
+        return validateAgainstSession("validate", token, tokenHash,
+                session.getId(), session.getUser().getId(), session.getState());
+    }
+
+    // null -> the session row has to be looked up
+    private TokenValidationResult validateInMemory(String token, String tokenHash) {
+        if (statelessValidation) return validateLocally(token, tokenHash);
+        /*
+        Hot path: this token was already validated against the DB and has not expired yet.
+        Cache entries are dropped as soon as the session goes INACTIVE/DELETED.
+        userId/scope come from the cache as well, no JWT parsing.
+         */
+        Optional<CachedSession> cachedSession = sessionCache.get(tokenHash);
+        if (cachedSession.isPresent()) {
+            CachedSession hit = cachedSession.get();
+            if (revocationSet.isRevokedForUser(hit.getUserId(), hit.getIssuedAt())) {
+                sessionCache.invalidate(tokenHash);
+                return TokenValidationResult.invalid(ValidationOutcome.REVOKED);
+            }
+            return TokenValidationResult.valid(hit.getUserId(), hit.getScope(), hit.getExpiresAt(), maxAgeSeconds);
+        }
+        /*
+        Negative cache: sessions already known to be INACTIVE/DELETED never hit the DB again,
+        however often a client retries the same token.
          */
-        Optional<Session> optionalSession = sessionRepo.findByToken(token);
-        if (optionalSession.isEmpty()) return false;
+        if (revocationSet.isRevoked(tokenHash)) return TokenValidationResult.invalid(ValidationOutcome.REVOKED);
+        // issued by this instance, row not flushed by the write-behind yet (removed only after commit)
+        if (sessionWriteBehind.isPending(tokenHash)) return validateLocally(token, tokenHash);
+        return null;
+    }
 
-        //Define Bean for SecretKey and inject here to validate token using Jwts.parserBuilder().setSigningKey(secretKey).build().parseClaimsJws(token);
+    private TokenValidationResult validateAgainstSession(String operation, String token, String tokenHash,
+                                                         Long sessionId, Long userId, State state) {
+        /*
+        Extracting the payload from the JWT using a parser which contains the secret key,
+        the parser checks exp as well
+         */
         Claims claims;
         try {
-            JwtParser jwtParser = Jwts.parser().verifyWith(secretKey).build();
-            claims = jwtParser.parseClaimsJws(token).getBody();
+            claims = authMetrics.phase(operation, "jwt_parse", () -> tokenEngine.verify(token));
+        } catch (ExpiredJwtException e) {
+            sessionRevoker.revoke(tokenHash);
+            return TokenValidationResult.invalid(ValidationOutcome.EXPIRED);
         } catch (Exception e) {
-            Session session = optionalSession.get();
-            session.setState(State.INACTIVE);
-            sessionRepo.save(session);
-            return false;
+            sessionRevoker.revoke(tokenHash);
+            return TokenValidationResult.invalid(ValidationOutcome.BAD_SIGNATURE);
         }
-        //System.out.println(claims);
 
-        /*
-        Extracting the payload from the JWT using a parser which contains the secret key
-
-         */
+        if (state != State.ACTIVE) {
+            revocationSet.revoke(tokenHash);
+            return TokenValidationResult.invalid(ValidationOutcome.REVOKED);
+        }
+        // logout everywhere still being written (or a write-behind row flushed after it)
+        if (isRevokedForUser(claims)) return TokenValidationResult.invalid(ValidationOutcome.REVOKED);
+        TokenValidationResult result = TokenValidationResult.valid(claims, maxAgeSeconds);
+        sessionCache.put(tokenHash, new CachedSession(sessionId, userId, result.getScope(),
+                TokenEngine.expiresAt(claims), TokenEngine.issuedAt(claims)));
+        return result;
+    }
 
-        Long expiryTime = (Long) claims.get("exp");
-        Long nowInMills = System.currentTimeMillis();
+    /*
+    Batch variant for gateways, every token goes through the same steps as in validateToken:
+    1. cached / revoked / not yet flushed tokens are decided in memory
+    2. the remaining sessions are resolved with ONE `where token_hash in (...)` select
+    3. those tokens are parsed one after the other on the calling thread, a bad signature or an
+       expired token revokes its session exactly like a single validate does
+    Results are in the order of the tokens, each outcome is counted under validate_batch.
+     */
+    @Override
+    public List<TokenValidationResult> validateTokens(List<String> tokens) {
+        long startedAt = System.nanoTime();
+        TokenValidationResult[] results = new TokenValidationResult[tokens.size()];
+        String[] tokenHashes = new String[tokens.size()];
+        List<Integer> toLookup = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token == null || token.isEmpty()) {
+                results[i] = TokenValidationResult.invalid(ValidationOutcome.BAD_SIGNATURE);
+                continue;
+            }
+            tokenHashes[i] = TokenHasher.sha256Hex(token);
+            results[i] = validateInMemory(token, tokenHashes[i]);
+            if (results[i] == null) toLookup.add(i);
+        }
 
-        if (nowInMills > expiryTime) {
-            Session session = optionalSession.get();
-            session.setState(State.INACTIVE);
-            sessionRepo.save(session);
-            return false;
+        if (!toLookup.isEmpty()) {
+            List<String> lookupHashes = toLookup.stream().map(i -> tokenHashes[i]).distinct().toList();
+            Map<String, SessionStatus> sessions = new HashMap<>();
+            for (SessionStatus sessionStatus : authMetrics.phase("validate_batch", "session_lookup",
+                    () -> sessionRepo.findStatusByTokenHashIn(lookupHashes))) {
+                sessions.put(sessionStatus.getTokenHash(), sessionStatus);
+            }
+            for (int i : toLookup) {
+                SessionStatus sessionStatus = sessions.get(tokenHashes[i]);
+                results[i] = sessionStatus == null
+                        ? TokenValidationResult.invalid(ValidationOutcome.UNKNOWN_SESSION)
+                        : validateAgainstSession("validate_batch", tokens.get(i), tokenHashes[i],
+                        sessionStatus.getId(), sessionStatus.getUserId(), sessionStatus.getState());
+            }
         }
+        for (TokenValidationResult result : results) {
+            authMetrics.outcome("validate_batch", result.getOutcome().getTag(), startedAt);
+        }
+        return List.of(results);
+    }
 
-        return true;
+    private TokenValidationResult result(ValidationOutcome outcome, Claims claims) {
+        return outcome == ValidationOutcome.VALID
+                ? TokenValidationResult.valid(claims, maxAgeSeconds)
+                : TokenValidationResult.invalid(outcome);
+    }
+
+    private boolean isRevokedForUser(Claims claims) {
+        return revocationSet.isRevokedForUser(TokenValidationResult.userIdOf(claims), TokenEngine.issuedAt(claims));
+    }
 
+    /*
+    No DB access: the signature proves we issued the token, the parser checks exp against the clock,
+    and revoked sessions are known from the RevocationSet.
+    Expired tokens are not written back as INACTIVE here, the exp check rejects them anyway.
+     */
+    private TokenValidationResult validateLocally(String token, String tokenHash) {
+        if (revocationSet.isRevoked(tokenHash)) return TokenValidationResult.invalid(ValidationOutcome.REVOKED);
+        Claims claims;
+        try {
+            claims = authMetrics.phase("validate", "jwt_parse", () -> tokenEngine.verify(token));
+        } catch (ExpiredJwtException e) {
+            return TokenValidationResult.invalid(ValidationOutcome.EXPIRED);
+        } catch (Exception e) {
+            return TokenValidationResult.invalid(ValidationOutcome.BAD_SIGNATURE);
+        }
+        if (isRevokedForUser(claims)) return TokenValidationResult.invalid(ValidationOutcome.REVOKED);
+        return result(ValidationOutcome.VALID, claims);
     }
 }
 
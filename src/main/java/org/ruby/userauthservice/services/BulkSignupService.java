@@ -0,0 +1,225 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ruby.userauthservice.dtos.BulkSignupResponseDTO;
+import org.ruby.userauthservice.dtos.BulkSignupRowDTO;
+import org.ruby.userauthservice.dtos.BulkSignupStatus;
+import org.ruby.userauthservice.dtos.SignupRequestDTO;
+import org.ruby.userauthservice.exceptions.TooManyRequestsException;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.repositories.UserEmailId;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/*
+Bulk signup, used to onboard a tenant in one request instead of one /auth/signup call per user.
+
+The users are consumed from an iterator (the request body is streamed, never fully in memory)
+in chunks of auth.signup.bulk.chunk-size. Per chunk:
+1. validate    -> email and password are required, an email repeated in the request only counts once
+2. existing    -> one `select id, email from user where email in (...)`
+3. hashing     -> one bulk rate limit permit per user to hash (LoginRateLimiter), then
+                  PasswordHashingPool.encodeAll, BCrypt on all cores
+4. insert      -> JDBC batch into user, one select of the generated ids, JDBC batch into users_roles (DEFAULT role)
+Step 4 is one transaction per chunk: if it fails (e.g. an email signed up concurrently hits the unique index)
+the whole chunk is reported FAILED, earlier chunks stay committed.
+If the rate limit rejects a chunk, its users are reported FAILED and the rest of the request is not read.
+
+Every user gets a row in the response with its status, plus totals and throughput.
+
+Metrics: auth.signup.bulk.rows (tag status=created|already_exists|invalid|failed)
+ */
+@Service
+public class BulkSignupService implements IBulkSignupService {
+    private static final Logger log = LoggerFactory.getLogger(BulkSignupService.class);
+    private static final String INSERT_USER_SQL = "insert into user (created_at, last_updated_at, state, name, email, password) " +
+            "values (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_USER_ROLE_SQL = "insert into users_roles (user_id, role_id) values (?, ?)";
+
+    private final UserRepo userRepo;
+    private final RoleCatalog roleCatalog;
+    private final EmailFilter emailFilter;
+    private final PasswordHashingPool passwordHashingPool;
+    private final LoginRateLimiter loginRateLimiter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Map<BulkSignupStatus, Counter> rowCounters = new EnumMap<>(BulkSignupStatus.class);
+
+    public BulkSignupService(UserRepo userRepo, RoleCatalog roleCatalog, EmailFilter emailFilter, PasswordHashingPool passwordHashingPool,
+                             LoginRateLimiter loginRateLimiter, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${auth.signup.bulk.chunk-size:500}") int chunkSize) {
+        this.userRepo = userRepo;
+        this.roleCatalog = roleCatalog;
+        this.emailFilter = emailFilter;
+        this.passwordHashingPool = passwordHashingPool;
+        this.loginRateLimiter = loginRateLimiter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        for (BulkSignupStatus status : BulkSignupStatus.values()) {
+            rowCounters.put(status, Counter.builder("auth.signup.bulk.rows")
+                    .tag("status", status.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public BulkSignupResponseDTO signup(Iterator<SignupRequestDTO> users, String clientAddress) {
+        long startedAt = System.nanoTime();
+        BulkSignupResponseDTO response = new BulkSignupResponseDTO();
+        // emails seen earlier in this request
+        Set<String> seen = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        boolean throttled = false;
+        try {
+            while (!throttled && users.hasNext()) {
+                chunk.add(new Row(index++, users.next()));
+                if (chunk.size() == chunkSize) {
+                    throttled = !processChunk(chunk, seen, clientAddress, response);
+                    chunk.clear();
+                }
+            }
+        } catch (RuntimeException e) {
+            // malformed body: keep what was read so far
+            response.setError("Could not read user " + index + ": " + e.getMessage());
+        }
+        if (!throttled && !chunk.isEmpty()) processChunk(chunk, seen, clientAddress, response);
+
+        long durationNanos = System.nanoTime() - startedAt;
+        response.setTotal(response.getRows().size());
+        response.setDurationMillis(durationNanos / 1_000_000);
+        response.setUsersPerSecond(durationNanos > 0 ? response.getCreated() * 1e9 / durationNanos : 0);
+        return response;
+    }
+
+    // false if the rate limit stopped the request
+    private boolean processChunk(List<Row> chunk, Set<String> seen, String clientAddress, BulkSignupResponseDTO response) {
+        List<Row> candidates = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            if (row.user == null) {
+                row.reject(BulkSignupStatus.INVALID, "user is missing");
+                continue;
+            }
+            String email = row.user.getEmail();
+            if (email == null || email.isBlank() || !email.contains("@")) {
+                row.reject(BulkSignupStatus.INVALID, "email is missing or malformed");
+            } else if (row.user.getPassword() == null || row.user.getPassword().isEmpty()) {
+                row.reject(BulkSignupStatus.INVALID, "password is missing");
+            } else if (!seen.add(email)) {
+                row.reject(BulkSignupStatus.ALREADY_EXISTS, "email appears more than once in the request");
+            } else {
+                candidates.add(row);
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            Set<String> existing = new HashSet<>();
+            for (UserEmailId user : userRepo.findByEmailIn(candidates.stream().map(row -> row.user.getEmail()).toList())) {
+                existing.add(user.getEmail());
+            }
+            candidates.removeIf(row -> {
+                if (!existing.contains(row.user.getEmail())) return false;
+                row.reject(BulkSignupStatus.ALREADY_EXISTS, "user with this email already exists");
+                return true;
+            });
+        }
+
+        boolean throttled = false;
+        if (!candidates.isEmpty()) {
+            try {
+                // hashing is the cost of a bulk signup, every user to hash takes a permit
+                loginRateLimiter.checkBulkRows(clientAddress, candidates.size());
+            } catch (TooManyRequestsException e) {
+                throttled = true;
+                candidates.forEach(row -> row.reject(BulkSignupStatus.FAILED, e.getMessage()));
+                response.setError("Rate limited at user " + chunk.get(0).index + ", the rest of the request was not read: "
+                        + e.getMessage());
+                candidates.clear();
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            try {
+                List<String> hashes = passwordHashingPool.encodeAll(
+                        candidates.stream().map(row -> row.user.getPassword()).toList());
+                List<NewUser> newUsers = new ArrayList<>(candidates.size());
+                for (int i = 0; i < candidates.size(); i++) {
+                    newUsers.add(new NewUser(candidates.get(i).user, hashes.get(i)));
+                }
+                Long roleId = roleCatalog.getOrCreate("DEFAULT").getId();
+                transactionTemplate.executeWithoutResult(status -> insert(newUsers, roleId));
+                for (Row row : candidates) {
+                    row.status = BulkSignupStatus.CREATED;
+                    emailFilter.add(row.user.getEmail());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Bulk signup chunk of {} users failed", candidates.size(), e);
+                candidates.forEach(row -> row.reject(BulkSignupStatus.FAILED, e.getMessage()));
+            }
+        }
+
+        for (Row row : chunk) {
+            switch (row.status) {
+                case CREATED -> response.setCreated(response.getCreated() + 1);
+                case ALREADY_EXISTS -> response.setAlreadyExists(response.getAlreadyExists() + 1);
+                case INVALID -> response.setInvalid(response.getInvalid() + 1);
+                case FAILED -> response.setFailed(response.getFailed() + 1);
+            }
+            rowCounters.get(row.status).increment();
+            response.getRows().add(new BulkSignupRowDTO(row.index,
+                    row.user != null ? row.user.getEmail() : null, row.status, row.message));
+        }
+        return !throttled;
+    }
+
+    private void insert(List<NewUser> newUsers, Long roleId) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_USER_SQL, newUsers, newUsers.size(), (ps, newUser) -> {
+            ps.setTimestamp(1, now);
+            ps.setTimestamp(2, now);
+            ps.setString(3, State.ACTIVE.name());
+            ps.setString(4, newUser.user().getName());
+            ps.setString(5, newUser.user().getEmail());
+            ps.setString(6, newUser.passwordHash());
+        });
+
+        List<Long> userIds = userRepo.findByEmailIn(newUsers.stream().map(newUser -> newUser.user().getEmail()).toList())
+                .stream().map(UserEmailId::getId).toList();
+        jdbcTemplate.batchUpdate(INSERT_USER_ROLE_SQL, userIds, userIds.size(), (ps, userId) -> {
+            ps.setLong(1, userId);
+            ps.setLong(2, roleId);
+        });
+    }
+
+    private record NewUser(SignupRequestDTO user, String passwordHash) {
+    }
+
+    private static class Row {
+        private final int index;
+        private final SignupRequestDTO user;
+        private BulkSignupStatus status;
+        private String message;
+
+        private Row(int index, SignupRequestDTO user) {
+            this.index = index;
+            this.user = user;
+        }
+
+        private void reject(BulkSignupStatus status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+    }
+}
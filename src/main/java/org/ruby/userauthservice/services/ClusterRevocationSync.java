@@ -0,0 +1,168 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Cluster mode (auth.cluster.enabled=true): several instances behind a load balancer, one database.
+
+Reads stay local (SessionCache, RevocationSet), what has to be shared goes through the database:
+- signing keys     -> signing_key table, see SigningKeyStore (unknown kids trigger a reload)
+- revocations      -> every token hash SessionRevoker deactivates is also appended to
+                      session_revocation_log, in the same transaction as the session update.
+                      A logout everywhere appends one row with the user id instead.
+                      Each instance polls the log every auth.cluster.poll-interval-ms and applies
+                      new entries to its RevocationSet and SessionCache.
+
+Rows become visible in commit order, not in id or created_at order: a transaction that appended
+a row at T may commit after rows of later transactions were already polled. So every poll re-reads
+the window created_at > (newest created_at seen - auth.cluster.poll-overlap-ms), walked in
+(created_at, id) order, and re-applies what it finds (applying an entry twice is harmless).
+
+Staleness bound: a revocation on one instance is applied on every other one within
+    auth.session.revoke-flush-interval-ms + time to commit + auth.cluster.poll-interval-ms (+ one query)
+as long as the appending transaction commits within poll-overlap-ms minus the clock skew between
+instances (created_at comes from the appending instance). A revocation committed later than that is
+only in the DB: the session row is INACTIVE, but other instances may keep serving it from their
+SessionCache. Keep the overlap well above the longest transaction (default 10s, Hikari hands out
+connections within 2s).
+
+Not shared: rate limiter buckets (limits are per instance) and write-behind sessions (only validatable
+on the issuing instance until flushed). The EmailFilter answers "maybe" for every email in cluster mode,
+a signup on another instance would otherwise be "definitely not registered" until the next refresh.
+
+Log rows older than the token lifetime are deleted by the hourly prune.
+
+Metrics: auth.cluster.revocations.applied, auth.cluster.poll (timer)
+ */
+@Component
+public class ClusterRevocationSync {
+    private static final Logger log = LoggerFactory.getLogger(ClusterRevocationSync.class);
+    private static final String INSERT_SQL = "insert into session_revocation_log (token_hash, created_at) values (?, ?)";
+    private static final String INSERT_USER_SQL = "insert into session_revocation_log (user_id, created_at) values (?, ?)";
+    private static final String POLL_SQL = "select id, token_hash, user_id, created_at from session_revocation_log " +
+            "where created_at > ? or (created_at = ? and id > ?) order by created_at, id limit ?";
+    private static final int PAGE_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RevocationSet revocationSet;
+    private final SessionCache sessionCache;
+    private final TokenLifetimes tokenLifetimes;
+    private final boolean enabled;
+    private final long overlapMillis;
+    private final Counter applied;
+    private final Timer pollTime;
+    // newest created_at (epoch millis) seen by a poll, -1 until start()
+    private volatile long lastSeen = -1L;
+
+    public ClusterRevocationSync(JdbcTemplate jdbcTemplate, RevocationSet revocationSet, SessionCache sessionCache,
+                                 TokenLifetimes tokenLifetimes, MeterRegistry meterRegistry,
+                                 @Value("${auth.cluster.enabled:false}") boolean enabled,
+                                 @Value("${auth.cluster.poll-overlap-ms:10000}") long overlapMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.revocationSet = revocationSet;
+        this.sessionCache = sessionCache;
+        this.tokenLifetimes = tokenLifetimes;
+        this.enabled = enabled;
+        this.overlapMillis = overlapMillis;
+        this.applied = Counter.builder("auth.cluster.revocations.applied")
+                .description("Revocations of other instances applied to the local caches")
+                .register(meterRegistry);
+        this.pollTime = Timer.builder("auth.cluster.poll").register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /*
+    Called by SessionRevoker inside the transaction of the session update
+     */
+    public void append(Collection<String> tokenHashes) {
+        if (!enabled || tokenHashes.isEmpty()) return;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERT_SQL, tokenHashes, tokenHashes.size(), (ps, tokenHash) -> {
+            ps.setString(1, tokenHash);
+            ps.setTimestamp(2, now);
+        });
+    }
+
+    /*
+    Logout everywhere of userId at revokedAt, called by SessionRevoker inside its transaction
+     */
+    public void appendUser(Long userId, long revokedAt) {
+        if (!enabled) return;
+        jdbcTemplate.update(INSERT_USER_SQL, userId, new Timestamp(revokedAt));
+    }
+
+    /*
+    Local caches start empty, so only revocations from now on matter (stateless mode also loads
+    the revoked sessions themselves, see RevocationSetRefresher). The first poll still looks back
+    poll-overlap-ms for rows committed late.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) return;
+        lastSeen = System.currentTimeMillis();
+    }
+
+    @Scheduled(fixedDelayString = "${auth.cluster.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled || lastSeen < 0) return;
+        long startedAt = System.nanoTime();
+        // keyset cursor (created_at, id), starts at the beginning of the overlap window
+        Timestamp afterCreatedAt = new Timestamp(lastSeen - overlapMillis);
+        long afterId = 0L;
+        long newLastSeen = lastSeen;
+        List<long[]> page;
+        do {
+            page = jdbcTemplate.query(POLL_SQL, (rs, rowNum) -> {
+                long createdAt = rs.getTimestamp("created_at").getTime();
+                String tokenHash = rs.getString("token_hash");
+                if (tokenHash == null) {
+                    // cache hits check the user watermark, nothing to invalidate
+                    revocationSet.revokeUser(rs.getLong("user_id"), createdAt);
+                    applied.increment();
+                    return new long[]{createdAt, rs.getLong("id")};
+                }
+                // invalidated again on re-reads, a validation racing the first one may have re-cached the session
+                sessionCache.invalidate(tokenHash);
+                if (!revocationSet.isRevoked(tokenHash)) {
+                    revocationSet.revoke(tokenHash);
+                    applied.increment();
+                }
+                return new long[]{createdAt, rs.getLong("id")};
+            }, afterCreatedAt, afterCreatedAt, afterId, PAGE_SIZE);
+            if (!page.isEmpty()) {
+                long[] last = page.get(page.size() - 1);
+                afterCreatedAt = new Timestamp(last[0]);
+                afterId = last[1];
+                newLastSeen = Math.max(newLastSeen, last[0]);
+            }
+        } while (page.size() == PAGE_SIZE);
+        lastSeen = newLastSeen;
+        pollTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    public void prune() {
+        if (!enabled) return;
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - tokenLifetimes.accessMillis());
+        int deleted = jdbcTemplate.update("delete from session_revocation_log where created_at < ?", cutoff);
+        if (deleted > 0) log.info("Pruned {} revocation log rows", deleted);
+    }
+}
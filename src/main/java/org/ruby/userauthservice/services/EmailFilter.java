@@ -0,0 +1,109 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ruby.userauthservice.repositories.UserEmailId;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.ruby.userauthservice.utils.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+In memory Bloom filter of registered emails, lets signup and login skip the user lookup
+for emails that are definitely not registered (credential stuffing mostly tries those).
+
+1. On startup every email is streamed from the user table (keyset paginated on id)
+2. signup / bulk signup add their emails right away
+3. Every auth.email-filter.refresh-interval-ms users with a higher id are added,
+   so signups done by other instances are picked up (with one page of overlap for ids committed late)
+
+Emails are lower cased, the MySQL collation compares them case insensitively.
+Until the initial load is done, and with auth.email-filter.enabled=false, every email "might" exist.
+In cluster mode (auth.cluster.enabled=true) too: a signup on another instance only reaches this filter
+with the next refresh, a "definitely not registered" in between would fail a valid login, so every
+lookup falls through to the DB and the filter is not loaded.
+Deleted users stay in the filter (a Bloom filter can't remove), they only cost a false positive.
+Size it with auth.email-filter.expected-insertions, beyond that the false positive rate grows.
+
+Metrics: auth.email-filter.fill-ratio (false positive rate ~ fill-ratio^hashes), auth.email-filter.rejected (lookups answered "definitely absent")
+ */
+@Component
+public class EmailFilter {
+    private static final Logger log = LoggerFactory.getLogger(EmailFilter.class);
+    private static final int PAGE_SIZE = 1000;
+
+    private final UserRepo userRepo;
+    private final boolean enabled;
+    private final BloomFilter bloomFilter;
+    private final Counter rejected;
+
+    private volatile boolean loaded = false;
+    private volatile long lastId = 0L;
+
+    public EmailFilter(UserRepo userRepo, MeterRegistry meterRegistry,
+                       @Value("${auth.email-filter.enabled:true}") boolean enabled,
+                       @Value("${auth.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                       @Value("${auth.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                       @Value("${auth.cluster.enabled:false}") boolean clusterEnabled) {
+        this.userRepo = userRepo;
+        this.enabled = enabled && !clusterEnabled;
+        this.bloomFilter = new BloomFilter(this.enabled ? expectedInsertions : 1, falsePositiveRate);
+        Gauge.builder("auth.email-filter.fill-ratio", bloomFilter, BloomFilter::fillRatio).register(meterRegistry);
+        this.rejected = Counter.builder("auth.email-filter.rejected").register(meterRegistry);
+    }
+
+    public boolean mightExist(String email) {
+        if (!enabled || !loaded || email == null) return true;
+        if (bloomFilter.mightContain(normalize(email))) return true;
+        rejected.increment();
+        return false;
+    }
+
+    public void add(String email) {
+        if (email == null) return;
+        bloomFilter.put(normalize(email));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        if (!enabled) return;
+        long count = loadAfter(0L);
+        loaded = true;
+        log.info("Email filter loaded with {} emails ({} bits, {} hashes)", count, bloomFilter.bitCount(), bloomFilter.hashCount());
+    }
+
+    @Scheduled(fixedDelayString = "${auth.email-filter.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!loaded) return;
+        loadAfter(Math.max(lastId - PAGE_SIZE, 0L));
+    }
+
+    private long loadAfter(long afterId) {
+        long count = 0;
+        List<UserEmailId> page;
+        do {
+            page = userRepo.findEmailsAfterId(afterId, PageRequest.ofSize(PAGE_SIZE));
+            for (UserEmailId user : page) {
+                add(user.getEmail());
+                afterId = user.getId();
+            }
+            count += page.size();
+        } while (page.size() == PAGE_SIZE);
+        if (afterId > lastId) lastId = afterId;
+        return count;
+    }
+
+    private static String normalize(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,13 +1,24 @@
 package org.ruby.userauthservice.services;
 
 import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
 import org.ruby.userauthservice.pojos.UserToken;
 
+import java.util.List;
+
 public interface IAuthService {
     User signup(String email, String name, String password);
 
     UserToken login(String email, String password);
 
-    Boolean validateToken(String token);
+    UserToken refresh(String refreshToken);
+
+    void logout(String token, String refreshToken);
+
+    int logoutAll(String token);
+
+    TokenValidationResult validateToken(String token);
+
+    List<TokenValidationResult> validateTokens(List<String> tokens);
 
 }
@@ -0,0 +1,10 @@
+package org.ruby.userauthservice.services;
+
+import org.ruby.userauthservice.dtos.BulkSignupResponseDTO;
+import org.ruby.userauthservice.dtos.SignupRequestDTO;
+
+import java.util.Iterator;
+
+public interface IBulkSignupService {
+    BulkSignupResponseDTO signup(Iterator<SignupRequestDTO> users, String clientAddress);
+}
@@ -0,0 +1,165 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ruby.userauthservice.exceptions.AuthServiceBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/*
+Single-flight for duplicate logins (double taps, client retries).
+
+Identical attempts (same email and password) that arrive while one is running wait for it and
+get its result: the same token / the same exception, one user query, one password check, one session.
+A successful result is handed out for auth.login.coalesce.window-ms after it completed (capped below
+a second), failures only to the attempts that were already waiting.
+
+Key -> email + HMAC-SHA256(email, password) with a random key generated at startup, the raw
+password is never kept and the digest is useless outside this process.
+
+Runs before any transaction is opened (AuthService.login is not transactional, the writes of the
+leader commit inside authenticate), so waiting attempts hold no DB connection and are only released
+with a token whose session row is already committed. Calling it inside a transaction is a bug.
+
+A waiting attempt gives up after auth.password.hashing.timeout-ms (503, like a saturated hashing pool),
+the leader itself is bounded by the same timeout on the hashing pool.
+
+At most auth.login.coalesce.max-entries attempts are tracked, beyond that logins simply run uncoalesced.
+Entries are dropped on failure and by evictExpired() once their window is over.
+
+Metrics: auth.login.coalesced (logins answered by another in-flight attempt), auth.login.coalesce.entries
+ */
+@Component
+public class LoginCoalescer {
+    private static final long MAX_WINDOW_MILLIS = 999;
+
+    private final ConcurrentHashMap<String, Flight> flights = new ConcurrentHashMap<>();
+    private final SecretKeySpec digestKey;
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxEntries;
+    private final long joinTimeoutMillis;
+    private final Counter coalesced;
+
+    public LoginCoalescer(MeterRegistry meterRegistry,
+                          @Value("${auth.login.coalesce.enabled:true}") boolean enabled,
+                          @Value("${auth.login.coalesce.window-ms:500}") long windowMillis,
+                          @Value("${auth.login.coalesce.max-entries:10000}") int maxEntries,
+                          @Value("${auth.password.hashing.timeout-ms:5000}") long joinTimeoutMillis) {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, "HmacSHA256");
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.min(windowMillis, MAX_WINDOW_MILLIS));
+        this.maxEntries = maxEntries;
+        this.joinTimeoutMillis = joinTimeoutMillis;
+        this.coalesced = Counter.builder("auth.login.coalesced")
+                .description("Logins answered by an identical attempt that was already running")
+                .register(meterRegistry);
+        Gauge.builder("auth.login.coalesce.entries", flights, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    public <T> T login(String email, String password, Supplier<T> authenticate) {
+        if (!enabled || email == null || password == null) return authenticate.get();
+        if (TransactionSynchronizationManager.isActualTransactionActive())
+            throw new IllegalStateException("Logins are coalesced before a transaction is opened");
+        String key = key(email, password);
+        Flight flight = flights.get(key);
+        if (flight != null && !flight.isReusable(System.nanoTime(), windowNanos)) {
+            flights.remove(key, flight);
+            flight = null;
+        }
+        if (flight == null) {
+            if (flights.size() >= maxEntries) return authenticate.get();
+            Flight mine = new Flight();
+            flight = flights.putIfAbsent(key, mine);
+            if (flight == null) return lead(key, mine, authenticate);
+        }
+        coalesced.increment();
+        return join(flight);
+    }
+
+    private <T> T lead(String key, Flight flight, Supplier<T> authenticate) {
+        T result;
+        try {
+            result = authenticate.get();
+        } catch (RuntimeException | Error e) {
+            fail(key, flight, e);
+            throw e;
+        }
+        succeed(flight, result);
+        return result;
+    }
+
+    private static void succeed(Flight flight, Object result) {
+        flight.completedAtNanos = System.nanoTime();
+        flight.result.complete(result);
+    }
+
+    private void fail(String key, Flight flight, Throwable e) {
+        flights.remove(key, flight);
+        flight.result.completeExceptionally(e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T join(Flight flight) {
+        try {
+            return (T) flight.result.get(joinTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new AuthServiceBusyException("Login is taking too long, please retry");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthServiceBusyException("Login interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        flights.values().removeIf(flight -> !flight.isReusable(now, windowNanos));
+    }
+
+    private String key(String email, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(digestKey);
+            mac.update(email.getBytes(StandardCharsets.UTF_8));
+            // separator, so ("ab", "c") and ("a", "bc") don't collide
+            mac.update((byte) 0);
+            return email + ":" + HexFormat.of().formatHex(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static class Flight {
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private volatile long completedAtNanos;
+
+        // still running, or succeeded less than a window ago
+        private boolean isReusable(long now, long windowNanos) {
+            if (!result.isDone()) return true;
+            return !result.isCompletedExceptionally() && now - completedAtNanos <= windowNanos;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ruby.userauthservice.exceptions.TooManyRequestsException;
+import org.ruby.userauthservice.utils.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/*
+Throttles login and signup attempts, in process, with two sets of token buckets (see RateLimiter):
+
+ip    -> client address, checked by RateLimitFilter before the request body is even read
+         auth.rate-limit.ip.per-minute, auth.rate-limit.ip.burst
+email -> account being logged into, checked by AuthService.login before the user lookup,
+         so a distributed attack on one account is slowed down as well
+         auth.rate-limit.email.per-minute, auth.rate-limit.email.burst
+bulk  -> users imported through /auth/signup/bulk per client address, one permit per user to hash,
+         taken a chunk at a time by BulkSignupService (so burst must be at least auth.signup.bulk.chunk-size)
+         auth.rate-limit.bulk.per-minute, auth.rate-limit.bulk.burst
+
+Each limiter tracks at most auth.rate-limit.max-keys keys, idle keys are evicted every minute.
+A rejected attempt is a TooManyRequestsException (429 + Retry-After).
+auth.rate-limit.enabled=false turns all of them off.
+
+Behind a proxy set server.forward-headers-strategy so the client address is the real one.
+
+Metrics: auth.rate-limit.rejected, auth.rate-limit.keys, auth.rate-limit.untracked (tag limiter=ip|email|bulk)
+ */
+@Component
+public class LoginRateLimiter {
+    private final boolean enabled;
+    private final RateLimiter ipLimiter;
+    private final RateLimiter emailLimiter;
+    private final RateLimiter bulkLimiter;
+    private final Counter ipRejected;
+    private final Counter emailRejected;
+    private final Counter bulkRejected;
+
+    public LoginRateLimiter(MeterRegistry meterRegistry,
+                            @Value("${auth.rate-limit.enabled:true}") boolean enabled,
+                            @Value("${auth.rate-limit.ip.per-minute:120}") double ipPerMinute,
+                            @Value("${auth.rate-limit.ip.burst:20}") int ipBurst,
+                            @Value("${auth.rate-limit.email.per-minute:10}") double emailPerMinute,
+                            @Value("${auth.rate-limit.email.burst:5}") int emailBurst,
+                            @Value("${auth.rate-limit.bulk.per-minute:6000}") double bulkPerMinute,
+                            @Value("${auth.rate-limit.bulk.burst:1000}") int bulkBurst,
+                            @Value("${auth.rate-limit.max-keys:100000}") int maxKeys) {
+        this.enabled = enabled;
+        this.ipLimiter = new RateLimiter(ipPerMinute / 60, ipBurst, maxKeys);
+        this.emailLimiter = new RateLimiter(emailPerMinute / 60, emailBurst, maxKeys);
+        this.bulkLimiter = new RateLimiter(bulkPerMinute / 60, bulkBurst, maxKeys);
+        this.ipRejected = register(meterRegistry, "ip", ipLimiter);
+        this.emailRejected = register(meterRegistry, "email", emailLimiter);
+        this.bulkRejected = register(meterRegistry, "bulk", bulkLimiter);
+    }
+
+    public void checkIp(String address) {
+        if (!enabled || address == null) return;
+        check(ipLimiter, address, 1, ipRejected);
+    }
+
+    public void checkEmail(String email) {
+        if (!enabled || email == null) return;
+        check(emailLimiter, email.toLowerCase(Locale.ROOT), 1, emailRejected);
+    }
+
+    public void checkBulkRows(String address, int rows) {
+        if (!enabled || address == null || rows == 0) return;
+        check(bulkLimiter, address, rows, bulkRejected);
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdle() {
+        ipLimiter.evictIdle();
+        emailLimiter.evictIdle();
+        bulkLimiter.evictIdle();
+    }
+
+    private static void check(RateLimiter limiter, String key, int permits, Counter rejected) {
+        long waitNanos = limiter.tryAcquire(key, permits);
+        if (waitNanos == 0) return;
+        rejected.increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        throw new TooManyRequestsException("Too many attempts, retry in " + retryAfterSeconds + "s", retryAfterSeconds);
+    }
+
+    private static Counter register(MeterRegistry meterRegistry, String limiterName, RateLimiter limiter) {
+        Gauge.builder("auth.rate-limit.keys", limiter, RateLimiter::size)
+                .tag("limiter", limiterName)
+                .register(meterRegistry);
+        FunctionCounter.builder("auth.rate-limit.untracked", limiter, RateLimiter::untracked)
+                .description("Requests let through because every tracked key was active")
+                .tag("limiter", limiterName)
+                .register(meterRegistry);
+        return Counter.builder("auth.rate-limit.rejected")
+                .tag("limiter", limiterName)
+                .register(meterRegistry);
+    }
+}
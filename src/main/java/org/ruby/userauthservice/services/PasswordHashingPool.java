@@ -0,0 +1,187 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.ruby.userauthservice.exceptions.AuthServiceBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/*
+Runs password encode/matches (BCrypt or Argon2, see PasswordEncoderConfig) on a dedicated,
+bounded pool instead of the Tomcat request threads.
+
+threads  -> auth.password.hashing.threads (default: number of cores), hashing is pure CPU
+queue    -> auth.password.hashing.queue-capacity, beyond that requests are rejected immediately
+timeout  -> auth.password.hashing.timeout-ms, max time a request waits for its hash (queue + hashing)
+
+Rejections surface as AuthServiceBusyException (503 + Retry-After), so a login storm
+can never occupy more than `threads` cores and validateToken keeps its latency.
+
+encodeAll() is for bulk imports: it keeps at most `threads` of its hashes in the pool at a time,
+so the queue stays available to interactive signups/logins, and waits for a free slot instead of failing.
+
+Metrics: auth.password.hashing.queue.wait and auth.password.hashing.time (tag operation=encode|matches),
+plus the executor.* metrics of the pool (tag name=passwordHashing).
+ */
+@Component
+public class PasswordHashingPool {
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    // hash of a throwaway password with the configured cost, see matchesDummy()
+    private final String dummyHash;
+    private final int poolSize;
+    private final long timeoutMillis;
+    private final Timer encodeQueueWait;
+    private final Timer encodeTime;
+    private final Timer matchesQueueWait;
+    private final Timer matchesTime;
+
+    public PasswordHashingPool(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry,
+                               @Value("${auth.password.hashing.threads:0}") int threads,
+                               @Value("${auth.password.hashing.queue-capacity:64}") int queueCapacity,
+                               @Value("${auth.password.hashing.timeout-ms:5000}") long timeoutMillis) {
+        this.passwordEncoder = passwordEncoder;
+        this.dummyHash = passwordEncoder.encode("dummy-password-for-unknown-users");
+        this.encodeQueueWait = queueWaitTimer(meterRegistry, "encode");
+        this.encodeTime = hashTimer(meterRegistry, "encode");
+        this.matchesQueueWait = queueWaitTimer(meterRegistry, "matches");
+        this.matchesTime = hashTimer(meterRegistry, "matches");
+        this.timeoutMillis = timeoutMillis;
+        this.poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(this.poolSize, this.poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.prestartAllCoreThreads();
+        this.executor = pool;
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "passwordHashing");
+    }
+
+    public String encode(String rawPassword) {
+        return submit(encodeQueueWait, encodeTime, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return submit(matchesQueueWait, matchesTime, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    // true if the hash was made with another algorithm or a lower cost than the current one, no hashing involved
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /*
+    Same work as a matches() against a real user, so a login for an unknown email takes
+    as long as one with a wrong password and response times don't reveal which emails exist.
+     */
+    public void matchesDummy(String rawPassword) {
+        matches(rawPassword == null ? "" : rawPassword, dummyHash);
+    }
+
+    /*
+    Hashes all passwords in parallel, result i is the hash of rawPasswords.get(i)
+     */
+    public List<String> encodeAll(List<String> rawPasswords) {
+        Semaphore slots = new Semaphore(poolSize);
+        List<Future<String>> futures = new ArrayList<>(rawPasswords.size());
+        try {
+            for (String rawPassword : rawPasswords) {
+                slots.acquire();
+                futures.add(submitWhenAccepted(() -> {
+                    long startedAt = System.nanoTime();
+                    try {
+                        return passwordEncoder.encode(rawPassword);
+                    } finally {
+                        encodeTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                        slots.release();
+                    }
+                }));
+            }
+            List<String> encoded = new ArrayList<>(futures.size());
+            for (Future<String> future : futures) {
+                encoded.add(future.get());
+            }
+            return encoded;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new AuthServiceBusyException("Password hashing interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // the queue may be momentarily full of interactive requests, back off until it has room
+    private <T> Future<T> submitWhenAccepted(Callable<T> task) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            try {
+                return executor.submit(task);
+            } catch (RejectedExecutionException e) {
+                if (System.nanoTime() > deadline)
+                    throw new AuthServiceBusyException("Password hashing pool is saturated, please retry");
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    private <T> T submit(Timer queueWait, Timer hashTime, Supplier<T> hashing) {
+        long enqueuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long startedAt = System.nanoTime();
+                queueWait.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+                try {
+                    return hashing.get();
+                } finally {
+                    hashTime.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new AuthServiceBusyException("Too many concurrent password checks, please retry");
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new AuthServiceBusyException("Password check timed out, please retry");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AuthServiceBusyException("Password check interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static Timer queueWaitTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("auth.password.hashing.queue.wait").tag("operation", operation).register(meterRegistry);
+    }
+
+    private static Timer hashTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("auth.password.hashing.time").tag("operation", operation).register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
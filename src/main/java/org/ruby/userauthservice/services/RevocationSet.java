@@ -0,0 +1,85 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Token hashes of sessions that are no longer ACTIVE (INACTIVE / DELETED).
+
+Used by the stateless validation mode: signature and exp are verified locally and
+this set is the only thing consulted, so a valid token never needs MySQL.
+
+An entry is only useful while the token itself could still pass the exp check,
+so entries older than the access token lifetime are pruned every auth.revocation.prune-interval-ms,
+in every validation mode (the stateful path fills the set as a negative cache too).
+
+Logout everywhere (SessionRevoker.revokeUser) adds one entry per user instead of one per session:
+every token of that user issued at or before the given instant is revoked.
+ */
+@Component
+public class RevocationSet {
+    // tokenHash -> time (epoch millis) it was added to the set
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    // userId -> tokens issued at or before this time (epoch millis) are revoked
+    private final ConcurrentHashMap<Long, Long> revokedUsers = new ConcurrentHashMap<>();
+    private final TokenLifetimes tokenLifetimes;
+
+    public RevocationSet(MeterRegistry meterRegistry, TokenLifetimes tokenLifetimes) {
+        this.tokenLifetimes = tokenLifetimes;
+        Gauge.builder("auth.revocation.set.size", revoked, ConcurrentHashMap::size)
+                .description("Number of revoked token hashes held in memory")
+                .register(meterRegistry);
+        Gauge.builder("auth.revocation.users.size", revokedUsers, ConcurrentHashMap::size)
+                .description("Number of users with a logout everywhere held in memory")
+                .register(meterRegistry);
+    }
+
+    public boolean isRevoked(String tokenHash) {
+        return revoked.containsKey(tokenHash);
+    }
+
+    public void revoke(String tokenHash) {
+        if (tokenHash == null) return;
+        revoked.putIfAbsent(tokenHash, System.currentTimeMillis());
+    }
+
+    public void revokeUser(Long userId, long issuedAtOrBefore) {
+        if (userId == null) return;
+        revokedUsers.merge(userId, issuedAtOrBefore, Math::max);
+    }
+
+    /*
+    iat has second resolution, a token issued in the same second as a logout everywhere of its user
+    would count as revoked. Returns the issue time for a new token of the user: now, or right after such
+    a logout the start of the next second (at most a second ahead, the token's lifetime starts there).
+    Only logouts everywhere this instance already knows about are seen: in cluster mode a login in the
+    same second as a logout everywhere on another instance, before the next poll, still gets a revoked token.
+     */
+    public long issueTime(Long userId, long now) {
+        Long revokedBefore = userId == null ? null : revokedUsers.get(userId);
+        if (revokedBefore == null || now / 1000 > revokedBefore / 1000) return now;
+        return (revokedBefore / 1000 + 1) * 1000;
+    }
+
+    public boolean isRevokedForUser(Long userId, long issuedAt) {
+        if (userId == null || revokedUsers.isEmpty()) return false;
+        Long revokedBefore = revokedUsers.get(userId);
+        return revokedBefore != null && issuedAt <= revokedBefore;
+    }
+
+    @Scheduled(fixedDelayString = "${auth.revocation.prune-interval-ms:60000}")
+    public void prune() {
+        long cutoff = System.currentTimeMillis() - tokenLifetimes.accessMillis();
+        revoked.values().removeIf(addedAt -> addedAt < cutoff);
+        // tokens issued before the cutoff are expired anyway
+        revokedUsers.values().removeIf(revokedBefore -> revokedBefore < cutoff);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+}
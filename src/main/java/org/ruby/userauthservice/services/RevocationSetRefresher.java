@@ -0,0 +1,88 @@
+package org.ruby.userauthservice.services;
+
+import org.ruby.userauthservice.repositories.RevokedSession;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+
+/*
+Keeps the RevocationSet in sync with the session table when auth.validation.mode=stateless.
+
+1. On startup, load every non ACTIVE session whose token could still be unexpired (keyset paginated on id)
+2. Every auth.validation.revocation-refresh-interval-ms, load sessions whose state changed since the last poll
+
+Revocations done by this instance are added to the set directly, the poll picks up the ones done elsewhere.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.validation.mode", havingValue = "stateless")
+public class RevocationSetRefresher {
+    private static final Logger log = LoggerFactory.getLogger(RevocationSetRefresher.class);
+    private static final int PAGE_SIZE = 1000;
+
+    private final SessionRepo sessionRepo;
+    private final RevocationSet revocationSet;
+    private final TokenLifetimes tokenLifetimes;
+    private final long clockSkewMillis;
+
+    private volatile boolean loaded = false;
+    private volatile Date watermark;
+
+    public RevocationSetRefresher(SessionRepo sessionRepo, RevocationSet revocationSet, TokenLifetimes tokenLifetimes,
+                                  @Value("${auth.validation.revocation-clock-skew-ms:1000}") long clockSkewMillis) {
+        this.sessionRepo = sessionRepo;
+        this.revocationSet = revocationSet;
+        this.tokenLifetimes = tokenLifetimes;
+        this.clockSkewMillis = clockSkewMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadAll() {
+        Date startedAt = new Date();
+        Date since = new Date(startedAt.getTime() - tokenLifetimes.accessMillis());
+        long lastId = 0L;
+        List<RevokedSession> page;
+        do {
+            page = sessionRepo.findRevokedAfterId(lastId, since, PageRequest.ofSize(PAGE_SIZE));
+            for (RevokedSession revokedSession : page) {
+                revocationSet.revoke(revokedSession.getTokenHash());
+                lastId = revokedSession.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        watermark = startedAt;
+        loaded = true;
+        log.info("Revocation set loaded with {} entries", revocationSet.size());
+    }
+
+    @Scheduled(fixedDelayString = "${auth.validation.revocation-refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!loaded) return;
+        Date since = new Date(watermark.getTime() - clockSkewMillis);
+        Date newWatermark = watermark;
+        List<RevokedSession> page;
+        do {
+            page = sessionRepo.findRevokedUpdatedSince(since, PageRequest.ofSize(PAGE_SIZE));
+            for (RevokedSession revokedSession : page) {
+                revocationSet.revoke(revokedSession.getTokenHash());
+                if (revokedSession.getLastUpdatedAt().after(newWatermark)) {
+                    newWatermark = revokedSession.getLastUpdatedAt();
+                }
+            }
+            if (page.size() < PAGE_SIZE) break;
+            Date lastSeen = page.get(page.size() - 1).getLastUpdatedAt();
+            // a full page sharing one timestamp, can't advance any further in this poll
+            if (!lastSeen.after(since)) break;
+            since = lastSeen;
+        } while (true);
+        watermark = newWatermark;
+    }
+}
@@ -0,0 +1,96 @@
+package org.ruby.userauthservice.services;
+
+import jakarta.annotation.PostConstruct;
+import org.ruby.userauthservice.models.Role;
+import org.ruby.userauthservice.repositories.RoleRepo;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+In memory copy of the role table, indexed by name and by id.
+
+Roles are practically static, so signup and the JWT scope claim resolve them here instead of MySQL.
+- loaded at startup, reloaded every auth.roles.refresh-interval-ms to pick up roles added elsewhere
+- getOrCreate() inserts a missing role once: role.name is unique, and if another instance (or thread)
+  wins the race the insert fails on the unique index and the existing row is read back
+ */
+@Component
+public class RoleCatalog {
+    private final RoleRepo roleRepo;
+    private volatile Map<String, Role> byName = Map.of();
+    private volatile Map<Long, Role> byId = Map.of();
+    // role id -> immutable single element scope list, almost every user has exactly one role
+    private final ConcurrentHashMap<Long, List<String>> scopeById = new ConcurrentHashMap<>();
+
+    public RoleCatalog(RoleRepo roleRepo) {
+        this.roleRepo = roleRepo;
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${auth.roles.refresh-interval-ms:300000}",
+            initialDelayString = "${auth.roles.refresh-interval-ms:300000}")
+    public void refresh() {
+        Map<String, Role> names = new HashMap<>();
+        Map<Long, Role> ids = new HashMap<>();
+        for (Role role : roleRepo.findAll()) {
+            names.put(role.getName(), role);
+            ids.put(role.getId(), role);
+        }
+        publish(names, ids);
+    }
+
+    public Optional<Role> findByName(String name) {
+        return Optional.ofNullable(byName.get(name));
+    }
+
+    public Optional<Role> findById(Long id) {
+        return Optional.ofNullable(byId.get(id));
+    }
+
+    public Role getOrCreate(String name) {
+        Role role = byName.get(name);
+        if (role != null) return role;
+        synchronized (this) {
+            role = byName.get(name);
+            if (role != null) return role;
+            try {
+                Role newRole = new Role();
+                newRole.setName(name);
+                role = roleRepo.save(newRole);
+            } catch (DataIntegrityViolationException e) {
+                // created concurrently by another instance
+                role = roleRepo.findByName(name).orElseThrow(() -> e);
+            }
+            Map<String, Role> names = new HashMap<>(byName);
+            Map<Long, Role> ids = new HashMap<>(byId);
+            names.put(role.getName(), role);
+            ids.put(role.getId(), role);
+            publish(names, ids);
+            return role;
+        }
+    }
+
+    /*
+    Scope claim for a user with exactly this one role
+     */
+    public List<String> scopeOf(Role role) {
+        if (role.getId() == null) return List.of(role.getName());
+        return scopeById.computeIfAbsent(role.getId(), id -> {
+            Role cached = byId.get(id);
+            return List.of(cached != null ? cached.getName() : role.getName());
+        });
+    }
+
+    private void publish(Map<String, Role> names, Map<Long, Role> ids) {
+        byName = Map.copyOf(names);
+        byId = Map.copyOf(ids);
+        scopeById.clear();
+    }
+}
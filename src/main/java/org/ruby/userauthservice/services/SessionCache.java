@@ -0,0 +1,82 @@
+package org.ruby.userauthservice.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.ruby.userauthservice.pojos.CachedSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/*
+Cache of sessions that were recently validated against the DB.
+
+Key   -> SHA-256 of the token (see TokenHasher), never the raw JWT
+Value -> session id, user id and the "exp" of the token
+
+Entries are evicted when
+1. the cache grows beyond auth.session-cache.max-size (Caffeine W-TinyLFU)
+2. the token expires (per entry expiry computed from the exp claim)
+3. the session changes state (INACTIVE / DELETED), via invalidate()
+
+auth.session-cache.max-size=0 disables the cache.
+ */
+@Component
+public class SessionCache {
+    private final Cache<String, CachedSession> cache;
+    private final boolean enabled;
+
+    public SessionCache(@Value("${auth.session-cache.max-size:100000}") long maxSize,
+                        MeterRegistry meterRegistry) {
+        this.enabled = maxSize > 0;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+        // exposes cache.gets{result=hit|miss}, cache.evictions, cache.size ... tagged cache=sessionCache
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "sessionCache");
+    }
+
+    public Optional<CachedSession> get(String tokenHash) {
+        if (!enabled) return Optional.empty();
+        CachedSession cachedSession = cache.getIfPresent(tokenHash);
+        if (cachedSession == null) return Optional.empty();
+        if (System.currentTimeMillis() > cachedSession.getExpiresAt()) {
+            cache.invalidate(tokenHash);
+            return Optional.empty();
+        }
+        return Optional.of(cachedSession);
+    }
+
+    public void put(String tokenHash, CachedSession cachedSession) {
+        if (!enabled) return;
+        cache.put(tokenHash, cachedSession);
+    }
+
+    public void invalidate(String tokenHash) {
+        cache.invalidate(tokenHash);
+    }
+
+    private static class TokenExpiry implements Expiry<String, CachedSession> {
+        @Override
+        public long expireAfterCreate(String key, CachedSession value, long currentTime) {
+            long remainingMillis = value.getExpiresAt() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedSession value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedSession value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
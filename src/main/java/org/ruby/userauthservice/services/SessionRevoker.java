@@ -0,0 +1,123 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Moves sessions out of ACTIVE state.
+
+revoke() takes effect locally right away (RevocationSet + SessionCache), the DB write is coalesced:
+token hashes are collected in a set and written every auth.session.revoke-flush-interval-ms with
+    update session set state = 'INACTIVE' ... where token_hash in (...) and state = 'ACTIVE'
+so a client retrying the same expired token hundreds of times per second costs one conditional
+update, no matter how many requests saw it, and never a load-and-save of the entity.
+
+revokeNow() (logout) and revokeUser() (logout everywhere) write synchronously instead.
+Sessions still queued in SessionWriteBehind are marked first, so they are inserted INACTIVE.
+
+In cluster mode the same chunk is appended to session_revocation_log in the same transaction,
+other instances apply it to their caches on their next poll (ClusterRevocationSync).
+ */
+@Component
+public class SessionRevoker {
+    private static final int CHUNK_SIZE = 500;
+
+    private final SessionRepo sessionRepo;
+    private final SessionCache sessionCache;
+    private final RevocationSet revocationSet;
+    private final ClusterRevocationSync clusterRevocationSync;
+    private final SessionWriteBehind sessionWriteBehind;
+    private final TransactionTemplate transactionTemplate;
+    private final Set<String> pendingDeactivations = ConcurrentHashMap.newKeySet();
+    private final Counter rowsDeactivated;
+
+    public SessionRevoker(SessionRepo sessionRepo, SessionCache sessionCache, RevocationSet revocationSet,
+                          ClusterRevocationSync clusterRevocationSync, SessionWriteBehind sessionWriteBehind,
+                          TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.sessionRepo = sessionRepo;
+        this.sessionCache = sessionCache;
+        this.revocationSet = revocationSet;
+        this.clusterRevocationSync = clusterRevocationSync;
+        this.sessionWriteBehind = sessionWriteBehind;
+        this.transactionTemplate = transactionTemplate;
+        this.rowsDeactivated = Counter.builder("auth.session.deactivated")
+                .description("Session rows moved from ACTIVE to INACTIVE")
+                .register(meterRegistry);
+    }
+
+    public void revoke(String tokenHash) {
+        revocationSet.revoke(tokenHash);
+        sessionCache.invalidate(tokenHash);
+        sessionWriteBehind.deactivate(tokenHash);
+        pendingDeactivations.add(tokenHash);
+    }
+
+    // logout: same as revoke() but the session row is INACTIVE when this returns
+    public void revokeNow(String tokenHash) {
+        revocationSet.revoke(tokenHash);
+        sessionCache.invalidate(tokenHash);
+        sessionWriteBehind.deactivate(tokenHash);
+        pendingDeactivations.remove(tokenHash);
+        deactivate(List.of(tokenHash));
+    }
+
+    /*
+    Logout everywhere: every token of the user issued until now stops validating.
+    No session is loaded: one set-based update on (user_id, state), and locally (and through the
+    revocation log on the other instances) one "revoked before" entry per user, so cached sessions
+    are rejected without knowing their hashes.
+    Runs in the caller's transaction if there is one.
+     */
+    public int revokeUser(Long userId) {
+        long now = System.currentTimeMillis();
+        revocationSet.revokeUser(userId, now);
+        sessionWriteBehind.deactivateUser(userId);
+        Integer rows = transactionTemplate.execute(status -> {
+            int updated = sessionRepo.deactivateByUserId(userId, new Date(now));
+            clusterRevocationSync.appendUser(userId, now);
+            return updated;
+        });
+        rowsDeactivated.increment(rows == null ? 0 : rows);
+        return rows == null ? 0 : rows;
+    }
+
+    @Scheduled(fixedDelayString = "${auth.session.revoke-flush-interval-ms:100}")
+    public void flush() {
+        if (pendingDeactivations.isEmpty()) return;
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        Iterator<String> iterator = pendingDeactivations.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            iterator.remove();
+            if (chunk.size() == CHUNK_SIZE) {
+                deactivate(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) deactivate(chunk);
+    }
+
+    private void deactivate(List<String> tokenHashes) {
+        if (!clusterRevocationSync.isEnabled()) {
+            rowsDeactivated.increment(sessionRepo.deactivateByTokenHashes(tokenHashes, new Date()));
+            return;
+        }
+        Integer rows = transactionTemplate.execute(status -> {
+            int updated = sessionRepo.deactivateByTokenHashes(tokenHashes, new Date());
+            clusterRevocationSync.append(tokenHashes);
+            return updated;
+        });
+        rowsDeactivated.increment(rows == null ? 0 : rows);
+    }
+}
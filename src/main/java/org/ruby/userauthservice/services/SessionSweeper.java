@@ -0,0 +1,136 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.repositories.ExpiringRow;
+import org.ruby.userauthservice.repositories.RefreshTokenRepo;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/*
+Background retention for the session table.
+
+Every auth.session.sweeper.interval-ms:
+1. expire -> ACTIVE sessions whose expires_at has passed are marked INACTIVE
+2. purge  -> non ACTIVE sessions that expired more than auth.session.sweeper.retention-hours ago are deleted
+3. refresh tokens that expired more than auth.session.sweeper.retention-hours ago are deleted (any state,
+   used ones are only needed for reuse detection while they could still be presented)
+
+Every phase walks the table in (expires_at, id) order with batches of auth.session.sweeper.batch-size rows,
+keyset paginated so each select is a range scan of idx_session_state_expires_at_id (purge walks INACTIVE and
+DELETED separately), then update/delete by id, one short transaction per batch, and sleeps
+auth.session.sweeper.pause-ms between batches so the sweep never competes with OLTP traffic for long.
+A run stops after auth.session.sweeper.max-batches-per-run batches per phase, the rest is picked up next run.
+
+Rows only ever leave in expires_at order, so the table can later be moved to RANGE partitions on
+expires_at and the purge phase replaced by dropping old partitions (MySQL then needs expires_at
+in the primary key and in the token_hash unique index).
+
+Metrics: auth.session.sweeper.rows (tag phase=expire|purge|refresh_purge), rows swept per run.
+ */
+@Component
+@ConditionalOnProperty(name = "auth.session.sweeper.enabled", havingValue = "true", matchIfMissing = true)
+public class SessionSweeper {
+    private static final Logger log = LoggerFactory.getLogger(SessionSweeper.class);
+
+    private final SessionRepo sessionRepo;
+    private final RefreshTokenRepo refreshTokenRepo;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long pauseMillis;
+    private final long retentionMillis;
+    private final DistributionSummary expiredPerRun;
+    private final DistributionSummary purgedPerRun;
+    private final DistributionSummary refreshTokensPurgedPerRun;
+
+    public SessionSweeper(SessionRepo sessionRepo, RefreshTokenRepo refreshTokenRepo, MeterRegistry meterRegistry,
+                          @Value("${auth.session.sweeper.batch-size:1000}") int batchSize,
+                          @Value("${auth.session.sweeper.max-batches-per-run:100}") int maxBatchesPerRun,
+                          @Value("${auth.session.sweeper.pause-ms:50}") long pauseMillis,
+                          @Value("${auth.session.sweeper.retention-hours:168}") long retentionHours) {
+        this.sessionRepo = sessionRepo;
+        this.refreshTokenRepo = refreshTokenRepo;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.pauseMillis = pauseMillis;
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        this.expiredPerRun = rowsPerRun(meterRegistry, "expire");
+        this.purgedPerRun = rowsPerRun(meterRegistry, "purge");
+        this.refreshTokensPurgedPerRun = rowsPerRun(meterRegistry, "refresh_purge");
+    }
+
+    @Scheduled(fixedDelayString = "${auth.session.sweeper.interval-ms:60000}",
+            initialDelayString = "${auth.session.sweeper.interval-ms:60000}")
+    public void sweep() {
+        Date now = new Date();
+        long expired = sweepInBatches(
+                (afterExpiresAt, afterId) -> sessionRepo.findExpiredActive(now, afterExpiresAt, afterId,
+                        PageRequest.ofSize(batchSize)),
+                ids -> sessionRepo.deactivateByIds(ids, now));
+        Date cutoff = new Date(now.getTime() - retentionMillis);
+        long purged = 0;
+        for (State state : List.of(State.INACTIVE, State.DELETED)) {
+            purged += sweepInBatches(
+                    (afterExpiresAt, afterId) -> sessionRepo.findPurgeable(state, cutoff, afterExpiresAt, afterId,
+                            PageRequest.ofSize(batchSize)),
+                    ids -> sessionRepo.deleteByIds(ids));
+        }
+        long refreshTokensPurged = sweepInBatches(
+                (afterExpiresAt, afterId) -> refreshTokenRepo.findPurgeable(cutoff, afterExpiresAt, afterId,
+                        PageRequest.ofSize(batchSize)),
+                ids -> refreshTokenRepo.deleteByIds(ids));
+        expiredPerRun.record(expired);
+        purgedPerRun.record(purged);
+        refreshTokensPurgedPerRun.record(refreshTokensPurged);
+        if (expired > 0 || purged > 0 || refreshTokensPurged > 0) {
+            log.info("Session sweep: {} expired, {} purged, {} refresh tokens purged", expired, purged, refreshTokensPurged);
+        }
+    }
+
+    private long sweepInBatches(BiFunction<Date, Long, List<ExpiringRow>> nextRows, Function<List<Long>, Integer> apply) {
+        long rows = 0;
+        Date afterExpiresAt = new Date(0);
+        long afterId = 0L;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            List<ExpiringRow> page = nextRows.apply(afterExpiresAt, afterId);
+            if (page.isEmpty()) break;
+            rows += apply.apply(page.stream().map(ExpiringRow::getId).toList());
+            ExpiringRow last = page.get(page.size() - 1);
+            afterExpiresAt = last.getExpiresAt();
+            afterId = last.getId();
+            if (page.size() < batchSize) break;
+            if (!pause()) break;
+        }
+        return rows;
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static DistributionSummary rowsPerRun(MeterRegistry meterRegistry, String phase) {
+        return DistributionSummary.builder("auth.session.sweeper.rows")
+                .description("Session rows swept per run")
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+}
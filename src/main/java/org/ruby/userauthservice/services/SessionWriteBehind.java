@@ -0,0 +1,297 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.repositories.TokenFamily;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+Write-behind for the Session rows created by login (auth.session.write-behind.enabled=true).
+
+login hands the new session to enqueue() and returns right after its transaction committed
+(enqueue() defers to afterCommit, a rolled back login leaves nothing behind), a single flusher thread
+inserts queued sessions with JDBC batches of up to auth.session.write-behind.batch-size rows, one transaction
+per batch, waiting at most auth.session.write-behind.flush-interval-ms for a batch to fill up.
+
+Contract
+1. A token is validatable as soon as login returns: until its row is committed the session is
+   held in the pending map and validateToken consults it after a DB miss.
+2. Batches are inserted in the order the sessions were issued, except after a failure: the sessions of a
+   failed batch are re-queued at the back, behind sessions issued later. Rows are keyed by token_hash,
+   nothing depends on the insert order.
+3. Durability is NOT the same as the synchronous path: sessions still queued when the process
+   dies are lost and their tokens stop validating (the client has to log in again).
+   On a regular shutdown the queue is flushed.
+4. A batch commits completely or not at all. A failed batch is retried up to 3 times, then its sessions are
+   dropped and logged. A retry first skips the sessions whose row exists already, so a commit that went
+   through but was reported as failed (e.g. the connection dropped on the acknowledgement) does not turn
+   into a unique token_hash violation and a dropped batch.
+5. If the queue is full (auth.session.write-behind.queue-capacity) login inserts synchronously.
+6. A session revoked while pending (logout, logout everywhere) is inserted INACTIVE: deactivate() /
+   deactivateUser() mark it before SessionRevoker runs its update. If the flusher already bound the row
+   as ACTIVE, it deactivates the row itself right after the commit, the update of the revoker covers
+   everything committed before the mark. Either way no revoked session ends up ACTIVE.
+
+Metrics: auth.session.write-behind.batch.size, auth.session.write-behind.flush.lag (enqueue of the
+oldest row in the batch -> commit), auth.session.write-behind.pending, auth.session.write-behind.dropped.
+ */
+@Component
+public class SessionWriteBehind {
+    private static final Logger log = LoggerFactory.getLogger(SessionWriteBehind.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String DEACTIVATE_SQL = "update session set state = 'INACTIVE', last_updated_at = ? " +
+            "where token_hash = ? and state = 'ACTIVE'";
+    private static final String INSERT_SQL = "insert into session (created_at, last_updated_at, state, token, token_hash, user_id, expires_at, family_id) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_EXISTING_SQL = "select token_hash from session where token_hash in (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final LinkedBlockingQueue<PendingSession> queue;
+    // tokenHash -> session, until the row is committed
+    private final ConcurrentHashMap<String, PendingSession> pending = new ConcurrentHashMap<>();
+    private final DistributionSummary batchSizeSummary;
+    private final Timer flushLag;
+    private final Counter dropped;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    public SessionWriteBehind(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                              @Value("${auth.session.write-behind.enabled:false}") boolean enabled,
+                              @Value("${auth.session.write-behind.batch-size:100}") int batchSize,
+                              @Value("${auth.session.write-behind.flush-interval-ms:20}") long flushIntervalMillis,
+                              @Value("${auth.session.write-behind.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSizeSummary = DistributionSummary.builder("auth.session.write-behind.batch.size")
+                .description("Sessions inserted per JDBC batch")
+                .register(meterRegistry);
+        this.flushLag = Timer.builder("auth.session.write-behind.flush.lag")
+                .description("Time from enqueueing the oldest session of a batch until the batch is committed")
+                .register(meterRegistry);
+        Gauge.builder("auth.session.write-behind.pending", pending, ConcurrentHashMap::size)
+                .register(meterRegistry);
+        this.dropped = Counter.builder("auth.session.write-behind.dropped")
+                .description("Sessions given up after failed inserts, their tokens stop validating")
+                .register(meterRegistry);
+        if (enabled) {
+            this.flusher = new Thread(this::flushLoop, "session-write-behind");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(String token, String tokenHash, Long userId, Date expiresAt, String familyId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // the refresh token / rehash of the same login may still roll back
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueueNow(token, tokenHash, userId, expiresAt, familyId);
+                }
+            });
+            return;
+        }
+        enqueueNow(token, tokenHash, userId, expiresAt, familyId);
+    }
+
+    private void enqueueNow(String token, String tokenHash, Long userId, Date expiresAt, String familyId) {
+        PendingSession pendingSession = new PendingSession(token, tokenHash, userId, expiresAt, familyId,
+                System.currentTimeMillis(), System.nanoTime());
+        pending.put(tokenHash, pendingSession);
+        if (!queue.offer(pendingSession)) {
+            // queue is full, fall back to a synchronous insert
+            try {
+                insert(List.of(pendingSession));
+                deactivateRevokedAfterBinding(List.of(pendingSession));
+            } finally {
+                pending.remove(tokenHash);
+            }
+        }
+    }
+
+    // the pending session (if any) is inserted INACTIVE, see contract 6
+    public void deactivate(String tokenHash) {
+        PendingSession pendingSession = pending.get(tokenHash);
+        if (pendingSession != null) pendingSession.state = State.INACTIVE;
+    }
+
+    // every pending session of the user is inserted INACTIVE, see contract 6
+    public void deactivateUser(Long userId) {
+        for (PendingSession pendingSession : pending.values()) {
+            if (pendingSession.userId.equals(userId)) pendingSession.state = State.INACTIVE;
+        }
+    }
+
+    // owner and refresh token family of a session whose row is not committed yet
+    public Optional<TokenFamily> pendingFamily(String tokenHash) {
+        PendingSession pendingSession = pending.get(tokenHash);
+        return pendingSession == null
+                ? Optional.empty()
+                : Optional.of(new TokenFamily(pendingSession.userId, pendingSession.familyId));
+    }
+
+    /*
+    Session issued by this instance whose row is not committed yet
+     */
+    public boolean isPending(String tokenHash) {
+        return pending.containsKey(tokenHash);
+    }
+
+    private void flushLoop() {
+        List<PendingSession> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSession first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) break;
+                    PendingSession next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                if (!running) break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingSession> batch) {
+        try {
+            List<PendingSession> toInsert = withoutCommittedRows(batch);
+            // all or nothing, a retry never finds half of its own batch committed (contract 4)
+            if (!toInsert.isEmpty()) transactionTemplate.executeWithoutResult(status -> insert(toInsert));
+            deactivateRevokedAfterBinding(batch);
+            batchSizeSummary.record(batch.size());
+            flushLag.record(System.nanoTime() - batch.get(0).enqueuedAtNanos, TimeUnit.NANOSECONDS);
+            for (PendingSession pendingSession : batch) {
+                pending.remove(pendingSession.tokenHash);
+            }
+        } catch (RuntimeException e) {
+            for (PendingSession pendingSession : batch) {
+                if (++pendingSession.attempts >= MAX_ATTEMPTS || !queue.offer(pendingSession)) {
+                    pending.remove(pendingSession.tokenHash);
+                    dropped.increment();
+                    log.error("Dropping session of user {} after {} failed inserts", pendingSession.userId, pendingSession.attempts, e);
+                }
+            }
+        }
+    }
+
+    // a retried session may have been committed by an attempt that reported a failure, only retries pay for the select
+    private List<PendingSession> withoutCommittedRows(List<PendingSession> batch) {
+        List<String> retriedHashes = new ArrayList<>();
+        for (PendingSession pendingSession : batch) {
+            if (pendingSession.attempts > 0) retriedHashes.add(pendingSession.tokenHash);
+        }
+        if (retriedHashes.isEmpty()) return batch;
+        Set<String> committed = new HashSet<>(jdbcTemplate.queryForList(
+                SELECT_EXISTING_SQL.formatted(String.join(", ", Collections.nCopies(retriedHashes.size(), "?"))),
+                String.class, retriedHashes.toArray()));
+        if (committed.isEmpty()) return batch;
+        List<PendingSession> toInsert = new ArrayList<>(batch.size());
+        for (PendingSession pendingSession : batch) {
+            if (!committed.contains(pendingSession.tokenHash)) toInsert.add(pendingSession);
+        }
+        return toInsert;
+    }
+
+    private void insert(List<PendingSession> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, pendingSession) -> {
+            Timestamp createdAt = new Timestamp(pendingSession.createdAtMillis);
+            ps.setTimestamp(1, createdAt);
+            ps.setTimestamp(2, createdAt);
+            pendingSession.insertedState = pendingSession.state;
+            ps.setString(3, pendingSession.insertedState.name());
+            ps.setString(4, pendingSession.token);
+            ps.setString(5, pendingSession.tokenHash);
+            ps.setLong(6, pendingSession.userId);
+            ps.setTimestamp(7, new Timestamp(pendingSession.expiresAt.getTime()));
+            ps.setString(8, pendingSession.familyId);
+        });
+    }
+
+    // revoked between binding and commit, still in the pending map so the revoker's own update may have missed it
+    private void deactivateRevokedAfterBinding(List<PendingSession> inserted) {
+        for (PendingSession pendingSession : inserted) {
+            if (pendingSession.insertedState == State.ACTIVE && pendingSession.state != State.ACTIVE)
+                jdbcTemplate.update(DEACTIVATE_SQL, new Timestamp(System.currentTimeMillis()), pendingSession.tokenHash);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher == null) return;
+        // the flusher notices within a second and drains what is left in the queue
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private static class PendingSession {
+        private final String token;
+        private final String tokenHash;
+        private final Long userId;
+        private final Date expiresAt;
+        private final String familyId;
+        private final long createdAtMillis;
+        private final long enqueuedAtNanos;
+        private int attempts;
+        // written by revoking threads, read by the flusher
+        private volatile State state = State.ACTIVE;
+        private State insertedState;
+
+        private PendingSession(String token, String tokenHash, Long userId, Date expiresAt, String familyId,
+                               long createdAtMillis, long enqueuedAtNanos) {
+            this.token = token;
+            this.tokenHash = tokenHash;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+            this.familyId = familyId;
+            this.createdAtMillis = createdAtMillis;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+}
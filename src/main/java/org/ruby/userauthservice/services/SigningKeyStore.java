@@ -0,0 +1,267 @@
+package org.ruby.userauthservice.services;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
+import org.ruby.userauthservice.models.SigningKey;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.repositories.SigningKeyRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/*
+Asymmetric JWT signing keys (ES256 by default, RS256 with auth.signing.algorithm=RS256),
+persisted in the signing_key table so tokens survive restarts and every instance shares them.
+
+- startup: ACTIVE keys are loaded, if there are none a key pair is generated and stored
+- signing: the newest ACTIVE key whose activatesAt has passed, its kid goes into the JWT header
+- verifying: any ACTIVE key, looked up by kid (TokenEngine)
+- rotate(): a new key is stored with activatesAt = now + auth.signing.publish-ahead-ms, so
+  resource servers caching /.well-known/jwks.json see it before the first token signed with it.
+  The previous keys get retireAfter = that instant + token lifetime, and are marked DELETED
+  (dropped from the JWKS) once no token signed with them can be unexpired.
+- every auth.signing.refresh-interval-ms keys are reloaded (rotations done by other instances),
+  expired keys retired and, with auth.signing.rotation-interval-hours > 0, the key rotated when due
+- a kid that is not known locally triggers a reload (at most once per second), so a key created by
+  another instance (first start of a cluster, manual rotate()) is picked up on the first token signed with it
+
+Private keys are encrypted with AES-GCM when auth.signing.key-encryption-key (base64, 32 bytes) is set.
+
+Without a SigningKeyRepo (benchmarks) keys are only kept in memory.
+ */
+@Component
+public class SigningKeyStore {
+    private static final Logger log = LoggerFactory.getLogger(SigningKeyStore.class);
+    private static final String ENCRYPTED_PREFIX = "v1:";
+    private static final int GCM_IV_BYTES = 12;
+    private static final long UNKNOWN_KID_RELOAD_INTERVAL_MILLIS = 1000L;
+
+    private final SigningKeyRepo signingKeyRepo;
+    private final TokenLifetimes tokenLifetimes;
+    private final String algorithm;
+    private final long rotationIntervalMillis;
+    private final long publishAheadMillis;
+    private final SecretKey keyEncryptionKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+    // keys of the in memory mode
+    private final List<SigningKey> memoryKeys = new ArrayList<>();
+
+    private volatile KeySet keySet = new KeySet(List.of(), Map.of());
+    private long lastUnknownKidReload;
+
+    public SigningKeyStore(SigningKeyRepo signingKeyRepo, TokenLifetimes tokenLifetimes,
+                           @Value("${auth.signing.algorithm:ES256}") String algorithm,
+                           @Value("${auth.signing.rotation-interval-hours:0}") long rotationIntervalHours,
+                           @Value("${auth.signing.publish-ahead-ms:300000}") long publishAheadMillis,
+                           @Value("${auth.signing.key-encryption-key:}") String keyEncryptionKey,
+                           @Value("${auth.signing.allow-unencrypted-keys:false}") boolean allowUnencryptedKeys) {
+        this.signingKeyRepo = signingKeyRepo;
+        this.tokenLifetimes = tokenLifetimes;
+        this.algorithm = algorithm;
+        signatureAlgorithm(algorithm);
+        this.rotationIntervalMillis = TimeUnit.HOURS.toMillis(rotationIntervalHours);
+        this.publishAheadMillis = publishAheadMillis;
+        this.keyEncryptionKey = keyEncryptionKey == null || keyEncryptionKey.isBlank()
+                ? null
+                : new SecretKeySpec(Base64.getDecoder().decode(keyEncryptionKey), "AES");
+        // private keys in the clear in signing_key are only acceptable for the local h2/dev profiles
+        if (this.keyEncryptionKey == null && signingKeyRepo != null) {
+            if (!allowUnencryptedKeys)
+                throw new IllegalStateException("auth.signing.key-encryption-key is not set, refusing to store "
+                        + "signing keys unencrypted (auth.signing.allow-unencrypted-keys=true for local profiles only)");
+            log.warn("auth.signing.key-encryption-key is not set, signing keys are stored unencrypted");
+        }
+    }
+
+    @PostConstruct
+    public synchronized void init() {
+        reload();
+        if (keySet.keys().isEmpty()) {
+            store(newKey(new Date()));
+            reload();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${auth.signing.refresh-interval-ms:60000}",
+            initialDelayString = "${auth.signing.refresh-interval-ms:60000}")
+    public synchronized void maintain() {
+        long now = System.currentTimeMillis();
+        for (SigningKey key : activeKeys()) {
+            if (key.getRetireAfter() != null && key.getRetireAfter().getTime() < now) {
+                key.setState(State.DELETED);
+                store(key);
+                log.info("Retired signing key {}", key.getKid());
+            }
+        }
+        reload();
+        List<LoadedKey> keys = keySet.keys();
+        if (rotationIntervalMillis > 0 && !keys.isEmpty()
+                && keys.get(keys.size() - 1).activatesAt() + rotationIntervalMillis < now) {
+            rotate();
+        }
+    }
+
+    public synchronized void rotate() {
+        Date activatesAt = new Date(System.currentTimeMillis() + publishAheadMillis);
+        Date retireAfter = new Date(activatesAt.getTime() + tokenLifetimes.accessMillis());
+        for (SigningKey key : activeKeys()) {
+            if (key.getRetireAfter() == null) {
+                key.setRetireAfter(retireAfter);
+                store(key);
+            }
+        }
+        SigningKey key = newKey(activatesAt);
+        store(key);
+        reload();
+        log.info("Rotated signing keys, {} signs from {}", key.getKid(), activatesAt);
+    }
+
+    // key for new tokens
+    public LoadedKey signer() {
+        return keySet.signer(System.currentTimeMillis());
+    }
+
+    // null if no ACTIVE key has this kid
+    public PublicKey publicKey(String kid) {
+        LoadedKey key = keySet.byKid().get(kid);
+        if (key == null && signingKeyRepo != null) key = reloadForUnknownKid(kid);
+        return key == null ? null : key.publicKey();
+    }
+
+    private synchronized LoadedKey reloadForUnknownKid(String kid) {
+        LoadedKey key = keySet.byKid().get(kid);
+        long now = System.currentTimeMillis();
+        // forged kids must not turn every request into a query
+        if (key != null || now - lastUnknownKidReload < UNKNOWN_KID_RELOAD_INTERVAL_MILLIS) return key;
+        lastUnknownKidReload = now;
+        reload();
+        return keySet.byKid().get(kid);
+    }
+
+    // immutable snapshot, replaced (new instance) whenever the set of keys changes
+    public KeySet keySet() {
+        return keySet;
+    }
+
+    private void reload() {
+        KeySet current = keySet;
+        List<LoadedKey> keys = new ArrayList<>();
+        for (SigningKey key : activeKeys()) {
+            LoadedKey loaded = current.byKid().get(key.getKid());
+            keys.add(loaded != null ? loaded : load(key));
+        }
+        keys.sort(Comparator.comparingLong(LoadedKey::activatesAt));
+        if (keys.equals(current.keys())) return;
+        Map<String, LoadedKey> byKid = new HashMap<>();
+        for (LoadedKey key : keys) byKid.put(key.kid(), key);
+        keySet = new KeySet(List.copyOf(keys), Map.copyOf(byKid));
+    }
+
+    private List<SigningKey> activeKeys() {
+        if (signingKeyRepo == null) {
+            return memoryKeys.stream().filter(key -> key.getState() == State.ACTIVE).toList();
+        }
+        return signingKeyRepo.findByStateOrderByActivatesAtAsc(State.ACTIVE);
+    }
+
+    private void store(SigningKey key) {
+        if (signingKeyRepo == null) {
+            if (!memoryKeys.contains(key)) memoryKeys.add(key);
+        } else {
+            signingKeyRepo.save(key);
+        }
+    }
+
+    private SigningKey newKey(Date activatesAt) {
+        KeyPair keyPair = signatureAlgorithm(algorithm).keyPair().build();
+        SigningKey key = new SigningKey();
+        key.setKid(Jwks.builder().key(keyPair.getPublic()).idFromThumbprint().build().getId());
+        key.setAlgorithm(algorithm);
+        key.setPublicKey(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+        key.setPrivateKey(encrypt(keyPair.getPrivate().getEncoded()));
+        key.setActivatesAt(activatesAt);
+        key.setState(State.ACTIVE);
+        return key;
+    }
+
+    private LoadedKey load(SigningKey key) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(key.getAlgorithm().startsWith("ES") ? "EC" : "RSA");
+            PublicKey publicKey = keyFactory.generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(key.getPublicKey())));
+            PrivateKey privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decrypt(key.getPrivateKey())));
+            return new LoadedKey(key.getKid(), signatureAlgorithm(key.getAlgorithm()), privateKey, publicKey,
+                    key.getActivatesAt().getTime());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Signing key " + key.getKid() + " can't be loaded", e);
+        }
+    }
+
+    private String encrypt(byte[] privateKey) {
+        if (keyEncryptionKey == null) return Base64.getEncoder().encodeToString(privateKey);
+        try {
+            byte[] iv = new byte[GCM_IV_BYTES];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(128, iv));
+            byte[] encrypted = cipher.doFinal(privateKey);
+            byte[] ivAndEncrypted = Arrays.copyOf(iv, iv.length + encrypted.length);
+            System.arraycopy(encrypted, 0, ivAndEncrypted, iv.length, encrypted.length);
+            return ENCRYPTED_PREFIX + Base64.getEncoder().encodeToString(ivAndEncrypted);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Signing key can't be encrypted", e);
+        }
+    }
+
+    private byte[] decrypt(String privateKey) throws GeneralSecurityException {
+        if (!privateKey.startsWith(ENCRYPTED_PREFIX)) return Base64.getDecoder().decode(privateKey);
+        if (keyEncryptionKey == null) {
+            throw new IllegalStateException("Signing keys are encrypted but auth.signing.key-encryption-key is not set");
+        }
+        byte[] ivAndEncrypted = Base64.getDecoder().decode(privateKey.substring(ENCRYPTED_PREFIX.length()));
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(128, ivAndEncrypted, 0, GCM_IV_BYTES));
+        return cipher.doFinal(ivAndEncrypted, GCM_IV_BYTES, ivAndEncrypted.length - GCM_IV_BYTES);
+    }
+
+    private static SignatureAlgorithm signatureAlgorithm(String algorithm) {
+        return switch (algorithm) {
+            case "ES256" -> Jwts.SIG.ES256;
+            case "RS256" -> Jwts.SIG.RS256;
+            default -> throw new IllegalArgumentException("Unsupported signing algorithm " + algorithm);
+        };
+    }
+
+    public record LoadedKey(String kid, SignatureAlgorithm algorithm, PrivateKey privateKey, PublicKey publicKey,
+                            long activatesAt) {
+    }
+
+    public record KeySet(List<LoadedKey> keys, Map<String, LoadedKey> byKid) {
+        // newest key that is already active, keys are sorted by activatesAt
+        LoadedKey signer(long now) {
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                if (keys.get(i).activatesAt() <= now) return keys.get(i);
+            }
+            return keys.get(0);
+        }
+    }
+}
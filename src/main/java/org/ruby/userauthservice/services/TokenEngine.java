@@ -0,0 +1,113 @@
+package org.ruby.userauthservice.services;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import org.ruby.userauthservice.models.Role;
+import org.ruby.userauthservice.models.User;
+import org.springframework.stereotype.Component;
+
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/*
+Issues and verifies the JWTs handed out by login.
+
+Payload (claims), times are NumericDate (epoch seconds, RFC 7519) so any JWT library reads them right:
+    iat    -> issued at
+    exp    -> expiry, iat + auth.token.access-ttl-ms (TokenLifetimes), truncated to the second
+    userId -> id of the user
+    iss    -> Ruby-auth-service
+    scope  -> role names of the user
+
+Tokens are signed with the current key of the SigningKeyStore (ES256/RS256), its id goes into
+the "kid" header. Verification picks the public key by kid, so tokens signed with a key that was
+rotated out are accepted until that key is retired, and resource servers can do the same with
+the keys published at /.well-known/jwks.json.
+
+The JwtParser is immutable and thread safe, so a single instance is shared by every request
+instead of being rebuilt for each validation. It enforces exp itself.
+ */
+@Component
+public class TokenEngine {
+    public static final String ISSUER = "Ruby-auth-service";
+
+    private final SigningKeyStore signingKeyStore;
+    private final JwtParser jwtParser;
+    private final RoleCatalog roleCatalog;
+    private final TokenLifetimes tokenLifetimes;
+
+    public TokenEngine(SigningKeyStore signingKeyStore, RoleCatalog roleCatalog, TokenLifetimes tokenLifetimes) {
+        this.signingKeyStore = signingKeyStore;
+        this.roleCatalog = roleCatalog;
+        this.tokenLifetimes = tokenLifetimes;
+        this.jwtParser = Jwts.parser().keyLocator(new KidLocator(signingKeyStore)).build();
+    }
+
+    public String issue(User user, long nowInMillis) {
+        SigningKeyStore.LoadedKey signer = signingKeyStore.signer();
+        return Jwts.builder()
+                .header().keyId(signer.kid()).and()
+                .issuedAt(new Date(nowInMillis))
+                .expiration(new Date(nowInMillis + tokenLifetimes.accessMillis()))
+                .claim("userId", user.getId())
+                .issuer(ISSUER)
+                .claim("scope", scopeOf(user.getRoles()))
+                .signWith(signer.privateKey(), signer.algorithm())
+                .compact();
+    }
+
+    /*
+    Verifies the signature and exp and returns the claims.
+    Throws ExpiredJwtException if the token is signed by us but expired (its claims are on the exception),
+    JwtException if the token is malformed or not signed by us.
+     */
+    public Claims verify(String token) throws JwtException {
+        return jwtParser.parseSignedClaims(token).getPayload();
+    }
+
+    // epoch millis, whole seconds
+    public static long expiresAt(Claims claims) {
+        Date exp = claims.getExpiration();
+        return exp == null ? 0L : exp.getTime();
+    }
+
+    // epoch millis, whole seconds
+    public static long issuedAt(Claims claims) {
+        Date iat = claims.getIssuedAt();
+        return iat == null ? 0L : iat.getTime();
+    }
+
+    private static class KidLocator extends LocatorAdapter<Key> {
+        private final SigningKeyStore signingKeyStore;
+
+        private KidLocator(SigningKeyStore signingKeyStore) {
+            this.signingKeyStore = signingKeyStore;
+        }
+
+        @Override
+        protected Key locate(JwsHeader header) {
+            String kid = header.getKeyId();
+            PublicKey publicKey = kid == null ? null : signingKeyStore.publicKey(kid);
+            if (publicKey == null) throw new JwtException("Unknown signing key " + kid);
+            return publicKey;
+        }
+    }
+
+    List<String> scopeOf(List<Role> roles) {
+        if (roles == null || roles.isEmpty()) return Collections.emptyList();
+        if (roles.size() == 1) return roleCatalog.scopeOf(roles.get(0));
+        List<String> scope = new ArrayList<>(roles.size());
+        for (Role role : roles) {
+            scope.add(role.getName());
+        }
+        return scope;
+    }
+}
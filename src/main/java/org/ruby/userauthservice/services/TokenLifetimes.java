@@ -0,0 +1,32 @@
+package org.ruby.userauthservice.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+Lifetimes of the tokens handed out by login and /auth/refresh.
+
+access  -> auth.token.access-ttl-ms, exp of the JWT (and expires_at of its session).
+           Everything that has to outlive the tokens it saw (revocation set, revocation log,
+           retired signing keys) keeps its data for this long.
+refresh -> auth.token.refresh-ttl-ms, lifetime of a refresh token, a rotation starts a new one.
+ */
+@Component
+public class TokenLifetimes {
+    private final long accessMillis;
+    private final long refreshMillis;
+
+    public TokenLifetimes(@Value("${auth.token.access-ttl-ms:900000}") long accessMillis,
+                          @Value("${auth.token.refresh-ttl-ms:2592000000}") long refreshMillis) {
+        this.accessMillis = accessMillis;
+        this.refreshMillis = refreshMillis;
+    }
+
+    public long accessMillis() {
+        return accessMillis;
+    }
+
+    public long refreshMillis() {
+        return refreshMillis;
+    }
+}
@@ -0,0 +1,46 @@
+package org.ruby.userauthservice.utils;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.function.IntFunction;
+
+/*
+Picks a hashing cost for this host: the highest cost in [minCost, maxCost] whose matches() takes
+at most targetMillis, never less than minCost.
+
+Only minCost is measured (best of 3 runs after a warm up run, so a busy host still gives a stable
+cost), higher costs are extrapolated from it:
+growth -> time(cost + 1) / time(cost), 2.0 for BCrypt (log2 rounds),
+          0.0 means linear in the cost (Argon2 iterations)
+ */
+public final class PasswordHashCalibrator {
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+    private static final int RUNS = 3;
+
+    private PasswordHashCalibrator() {
+    }
+
+    public static int calibrate(IntFunction<PasswordEncoder> encoderForCost, int minCost, int maxCost,
+                                long targetMillis, double growth) {
+        double millis = verifyMillis(encoderForCost.apply(minCost));
+        int cost = minCost;
+        while (cost < maxCost) {
+            millis *= growth > 0 ? growth : (cost + 1.0) / cost;
+            if (millis > targetMillis) break;
+            cost++;
+        }
+        return cost;
+    }
+
+    private static double verifyMillis(PasswordEncoder passwordEncoder) {
+        String encoded = passwordEncoder.encode(SAMPLE_PASSWORD);
+        passwordEncoder.matches(SAMPLE_PASSWORD, encoded);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long startedAt = System.nanoTime();
+            passwordEncoder.matches(SAMPLE_PASSWORD, encoded);
+            best = Math.min(best, System.nanoTime() - startedAt);
+        }
+        return best / 1_000_000.0;
+    }
+}
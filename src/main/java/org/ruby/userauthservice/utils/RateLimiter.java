@@ -0,0 +1,93 @@
+package org.ruby.userauthservice.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Token bucket per key, implemented as GCRA (generic cell rate algorithm):
+each key only stores its "theoretical arrival time" (TAT) in an AtomicLong, updated with a CAS loop,
+so there are no locks and no refill timers. The ConcurrentHashMap itself is striped.
+
+    emission interval T = 1s / permitsPerSecond
+    a request at `now` is allowed if max(TAT, now) + T - now <= burst * T, then TAT = max(TAT, now) + T
+
+A key whose TAT is in the past has a full bucket, which is exactly the state of a key that is
+not in the map, so idle keys can be evicted without losing anything (evictIdle()).
+At most maxKeys keys are tracked: a new key over that limit triggers an eviction, and if every
+key is still active the request is let through untracked (fail open, see untracked()).
+ */
+public class RateLimiter {
+    private static final long FULL_EVICTION_INTERVAL_NANOS = 100_000_000L;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final AtomicLong untracked = new AtomicLong();
+    private final AtomicLong lastFullEviction = new AtomicLong(System.nanoTime() - FULL_EVICTION_INTERVAL_NANOS);
+
+    public RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        this.emissionIntervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.burstNanos = emissionIntervalNanos * Math.max(burst, 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /*
+    Takes one permit for the key, returns 0 if allowed or else the nanos until the next permit
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, 1);
+    }
+
+    /*
+    Takes `permits` permits at once (all or none), returns 0 if allowed or else the nanos until they are available.
+    More permits than the burst are never granted.
+     */
+    public long tryAcquire(String key, int permits) {
+        long now = System.nanoTime();
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) {
+            if (buckets.size() >= maxKeys && !evictWhenFull(now)) {
+                untracked.incrementAndGet();
+                return 0;
+            }
+            tat = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+        while (true) {
+            long current = tat.get();
+            long start = current - now > 0 ? current : now;
+            long next = start + emissionIntervalNanos * permits;
+            long wait = next - now - burstNanos;
+            if (wait > 0) return wait;
+            if (tat.compareAndSet(current, next)) return 0;
+        }
+    }
+
+    // at most one full scan per FULL_EVICTION_INTERVAL_NANOS, a flood of new keys must not turn into a flood of scans
+    private boolean evictWhenFull(long now) {
+        long last = lastFullEviction.get();
+        if (now - last >= FULL_EVICTION_INTERVAL_NANOS && lastFullEviction.compareAndSet(last, now)) {
+            evictIdle();
+        }
+        return buckets.size() < maxKeys;
+    }
+
+    /*
+    Removes the keys whose bucket is full again, returns how many were removed
+     */
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int before = buckets.size();
+        buckets.values().removeIf(tat -> tat.get() - now <= 0);
+        return Math.max(before - buckets.size(), 0);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    // requests let through because the key table was full of active keys
+    public long untracked() {
+        return untracked.get();
+    }
+}
@@ -0,0 +1,24 @@
+package org.ruby.userauthservice.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public class TokenHasher {
+    private TokenHasher() {
+    }
+
+    /*
+    SHA-256 of the compact JWT, hex encoded (always 64 chars).
+    Used as the lookup key for sessions so we never compare or index the full token.
+     */
+    public static String sha256Hex(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
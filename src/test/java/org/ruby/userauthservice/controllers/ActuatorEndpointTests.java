@@ -0,0 +1,63 @@
+package org.ruby.userauthservice.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.configurations.SecurityConfig;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.ruby.userauthservice.services.IAuthService;
+import org.ruby.userauthservice.services.RoleCatalog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// same properties as BulkSignupEndpointTests, the context is shared
+@SpringBootTest(properties = {"auth.signup.bulk.enabled=true", "auth.password.bcrypt-strength=4",
+        "auth.login.coalesce.enabled=false"})
+@ActiveProfiles("h2")
+@AutoConfigureMockMvc
+class ActuatorEndpointTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    @Test
+    void metricsNeedAnAdminTokenHealthIsOpen() throws Exception {
+        authService.signup("member@actuator.org", "member", "password");
+        String memberToken = authService.login("member@actuator.org", "password").getToken();
+        authService.signup("admin@actuator.org", "admin", "password");
+        User admin = userRepo.findWithRolesByEmail("admin@actuator.org").orElseThrow();
+        admin.getRoles().add(roleCatalog.getOrCreate(SecurityConfig.ADMIN_ROLE));
+        userRepo.save(admin);
+        String adminToken = authService.login("admin@actuator.org", "password").getToken();
+
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+        for (String endpoint : new String[]{"/actuator/prometheus", "/actuator/metrics", "/actuator/metrics/auth.operation"}) {
+            mockMvc.perform(get(endpoint)).andExpect(status().isUnauthorized());
+            mockMvc.perform(get(endpoint).header(HttpHeaders.AUTHORIZATION, "Bearer " + memberToken))
+                    .andExpect(status().isForbidden());
+        }
+
+        mockMvc.perform(get("/actuator/prometheus").header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("auth_operation")));
+        mockMvc.perform(get("/actuator/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isOk());
+    }
+}
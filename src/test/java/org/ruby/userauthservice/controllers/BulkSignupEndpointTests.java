@@ -0,0 +1,71 @@
+package org.ruby.userauthservice.controllers;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.configurations.SecurityConfig;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.ruby.userauthservice.services.IAuthService;
+import org.ruby.userauthservice.services.RoleCatalog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"auth.signup.bulk.enabled=true", "auth.password.bcrypt-strength=4",
+        "auth.login.coalesce.enabled=false"})
+@ActiveProfiles("h2")
+@AutoConfigureMockMvc
+class BulkSignupEndpointTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    @Test
+    void onlyAdminsCanImportUsers() throws Exception {
+        authService.signup("member@bulk-endpoint.org", "member", "password");
+        String memberToken = authService.login("member@bulk-endpoint.org", "password").getToken();
+        authService.signup("admin@bulk-endpoint.org", "admin", "password");
+        User admin = userRepo.findWithRolesByEmail("admin@bulk-endpoint.org").orElseThrow();
+        admin.getRoles().add(roleCatalog.getOrCreate(SecurityConfig.ADMIN_ROLE));
+        userRepo.save(admin);
+        String adminToken = authService.login("admin@bulk-endpoint.org", "password").getToken();
+
+        mockMvc.perform(bulkSignup("anonymous@bulk-endpoint.org")).andExpect(status().isUnauthorized());
+        mockMvc.perform(bulkSignup("forged@bulk-endpoint.org").header(HttpHeaders.AUTHORIZATION, "Bearer not-a-token"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(bulkSignup("member-import@bulk-endpoint.org")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + memberToken))
+                .andExpect(status().isForbidden());
+        assertThat(userRepo.findByEmail("member-import@bulk-endpoint.org")).isEmpty();
+
+        mockMvc.perform(bulkSignup("admin-import@bulk-endpoint.org")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1));
+        assertThat(userRepo.findByEmail("admin-import@bulk-endpoint.org")).isPresent();
+    }
+
+    private static MockHttpServletRequestBuilder bulkSignup(String email) {
+        return post("/auth/signup/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"email\": \"" + email + "\", \"name\": \"bulk\", \"password\": \"password\"}]");
+    }
+}
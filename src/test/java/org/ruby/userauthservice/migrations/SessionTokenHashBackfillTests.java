@@ -0,0 +1,68 @@
+package org.ruby.userauthservice.migrations;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.models.Session;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// same properties as LogoutTests, the context is shared; the backfill under test is a local one with batches of 2
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.login.coalesce.enabled=false"})
+@ActiveProfiles("h2")
+class SessionTokenHashBackfillTests {
+
+    @Autowired
+    private SessionRepo sessionRepo;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void hashesLegacyRowsBatchByBatchAndPassesOverRowsWithoutToken() {
+        User user = new User();
+        user.setEmail("backfill@ruby.org");
+        user.setState(State.ACTIVE);
+        userRepo.save(user);
+        Session tokenless = legacySession(user, null);
+        List<Session> legacy = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            legacy.add(legacySession(user, "legacy-token-" + i));
+        }
+
+        new SessionTokenHashBackfill(jdbcTemplate, transactionTemplate, 2).run(null);
+
+        for (Session session : legacy) {
+            assertThat(sessionRepo.findById(session.getId())).get().extracting("tokenHash")
+                    .isEqualTo(TokenHasher.sha256Hex(session.getToken()));
+        }
+        assertThat(sessionRepo.findById(tokenless.getId())).get().extracting("tokenHash").isNull();
+    }
+
+    private Session legacySession(User user, String token) {
+        Session session = new Session();
+        session.setUser(user);
+        session.setToken(token);
+        session.setState(State.ACTIVE);
+        session.setExpiresAt(new Date());
+        return sessionRepo.save(session);
+    }
+}
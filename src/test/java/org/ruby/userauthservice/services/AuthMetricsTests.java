@@ -0,0 +1,50 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.exceptions.IncorrectPasswordException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "auth.password.bcrypt-strength=4")
+@ActiveProfiles("h2")
+class AuthMetricsTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // the context (and its registry) is shared with other test classes, so only presence is asserted
+    @Test
+    void recordsPhasesAndOutcomes() {
+        authService.signup("metrics@ruby.org", "metrics", "password");
+        String token = authService.login("metrics@ruby.org", "password").getToken();
+        assertThatThrownBy(() -> authService.login("metrics@ruby.org", "wrong"))
+                .isInstanceOf(IncorrectPasswordException.class);
+        assertThat(authService.validateToken(token).getScope()).containsExactly("DEFAULT");
+        // second call is a cache hit and still carries the claims
+        assertThat(authService.validateToken(token).getUserId()).isNotNull();
+        assertThat(authService.validateToken("not-a-token").isValid()).isFalse();
+
+        for (String phase : new String[]{"user_lookup", "bcrypt", "jwt_sign", "session_write"}) {
+            assertThat(count("auth.phase", "login", "phase", phase)).as(phase).isPositive();
+        }
+        assertThat(count("auth.phase", "validate", "phase", "jwt_parse")).isPositive();
+        assertThat(count("auth.operation", "signup", "outcome", "success")).isPositive();
+        assertThat(count("auth.operation", "login", "outcome", "success")).isPositive();
+        assertThat(count("auth.operation", "login", "outcome", "wrong_password")).isPositive();
+        assertThat(count("auth.operation", "validate", "outcome", "valid")).isPositive();
+        assertThat(count("auth.operation", "validate", "outcome", "unknown_session")).isPositive();
+    }
+
+    private long count(String name, String operation, String tagKey, String tagValue) {
+        var timer = meterRegistry.find(name).tag("operation", operation).tag(tagKey, tagValue).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
@@ -0,0 +1,86 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.models.Session;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+import org.ruby.userauthservice.pojos.ValidationOutcome;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.session-cache.max-size=0",
+        "auth.login.coalesce.enabled=false"})
+@ActiveProfiles("h2")
+class BatchValidationTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private SessionRepo sessionRepo;
+
+    @Autowired
+    private SessionRevoker sessionRevoker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void resolvesEveryTokenWithItsClaims() {
+        authService.signup("batch@ruby.org", "batch", "password");
+        String first = authService.login("batch@ruby.org", "password").getToken();
+        String second = authService.login("batch@ruby.org", "password").getToken();
+        sessionRepo.deactivateByTokenHashes(List.of(TokenHasher.sha256Hex(second)), new Date());
+
+        List<TokenValidationResult> results = authService.validateTokens(Arrays.asList(first, second, "garbage", null));
+
+        assertThat(results).extracting(TokenValidationResult::getOutcome).containsExactly(
+                ValidationOutcome.VALID, ValidationOutcome.REVOKED,
+                ValidationOutcome.UNKNOWN_SESSION, ValidationOutcome.BAD_SIGNATURE);
+        TokenValidationResult valid = results.get(0);
+        assertThat(valid.getUserId()).isNotNull();
+        assertThat(valid.getScope()).containsExactly("DEFAULT");
+        assertThat(valid.getExpiresAt()).isGreaterThan(System.currentTimeMillis());
+    }
+
+    @Test
+    void aTamperedTokenRevokesItsSessionLikeASingleValidate() {
+        authService.signup("tampered@ruby.org", "tampered", "password");
+        String first = authService.login("tampered@ruby.org", "password").getToken();
+        String stolen = authService.login("tampered@ruby.org", "password").getToken();
+        String last = authService.login("tampered@ruby.org", "password").getToken();
+        // same header and claims, one signature character changed
+        int at = stolen.length() - 10;
+        String tampered = stolen.substring(0, at) + (stolen.charAt(at) == 'A' ? 'B' : 'A') + stolen.substring(at + 1);
+        // a row that matches the tampered token, so its signature is what rejects it
+        Session session = sessionRepo.findByTokenHash(TokenHasher.sha256Hex(stolen)).orElseThrow();
+        session.setTokenHash(TokenHasher.sha256Hex(tampered));
+        sessionRepo.save(session);
+        long badSignatures = count("bad_signature");
+
+        List<TokenValidationResult> results = authService.validateTokens(List.of(first, tampered, last));
+
+        assertThat(results).extracting(TokenValidationResult::getOutcome).containsExactly(
+                ValidationOutcome.VALID, ValidationOutcome.BAD_SIGNATURE, ValidationOutcome.VALID);
+        assertThat(count("bad_signature")).isEqualTo(badSignatures + 1);
+        assertThat(authService.validateToken(tampered).getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+        sessionRevoker.flush();
+        assertThat(sessionRepo.findById(session.getId())).get().extracting("state").isEqualTo(State.INACTIVE);
+    }
+
+    private long count(String outcome) {
+        var timer = meterRegistry.find("auth.operation").tag("operation", "validate_batch")
+                .tag("outcome", outcome).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
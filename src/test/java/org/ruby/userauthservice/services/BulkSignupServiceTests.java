@@ -0,0 +1,85 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.dtos.BulkSignupResponseDTO;
+import org.ruby.userauthservice.dtos.BulkSignupRowDTO;
+import org.ruby.userauthservice.dtos.BulkSignupStatus;
+import org.ruby.userauthservice.dtos.SignupRequestDTO;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"auth.signup.bulk.chunk-size=2", "auth.password.bcrypt-strength=4",
+        "auth.rate-limit.bulk.per-minute=1", "auth.rate-limit.bulk.burst=4"})
+@ActiveProfiles("h2")
+class BulkSignupServiceTests {
+
+    @Autowired
+    private IBulkSignupService bulkSignupService;
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Test
+    void reportsEveryRowAndInsertsUsersWithTheDefaultRole() {
+        authService.signup("taken@bulk.org", "taken", "password");
+
+        BulkSignupResponseDTO response = bulkSignupService.signup(List.of(
+                user("a@bulk.org", "password"),
+                user("taken@bulk.org", "password"),
+                user("b@bulk.org", "password"),
+                user("not-an-email", "password"),
+                user("a@bulk.org", "password"),
+                user("c@bulk.org", "password")).iterator(), "10.0.0.1");
+
+        assertThat(response.getRows()).extracting(BulkSignupRowDTO::getStatus).containsExactly(
+                BulkSignupStatus.CREATED, BulkSignupStatus.ALREADY_EXISTS, BulkSignupStatus.CREATED,
+                BulkSignupStatus.INVALID, BulkSignupStatus.ALREADY_EXISTS, BulkSignupStatus.CREATED);
+        assertThat(response.getTotal()).isEqualTo(6);
+        assertThat(response.getCreated()).isEqualTo(3);
+        assertThat(response.getAlreadyExists()).isEqualTo(2);
+        assertThat(response.getInvalid()).isEqualTo(1);
+
+        for (String email : List.of("a@bulk.org", "b@bulk.org", "c@bulk.org")) {
+            User user = userRepo.findWithRolesByEmail(email).orElseThrow();
+            assertThat(user.getRoles()).extracting("name").containsExactly("DEFAULT");
+        }
+        assertThat(authService.login("b@bulk.org", "password").getToken()).isNotBlank();
+    }
+
+    @Test
+    void everyUserToHashTakesABulkPermitAndARejectedChunkStopsTheRequest() {
+        // burst 4: two chunks of 2 new users pass, the third chunk is rejected and nothing after it is read
+        BulkSignupResponseDTO response = bulkSignupService.signup(List.of(
+                user("limited-1@bulk.org", "password"),
+                user("limited-2@bulk.org", "password"),
+                user("limited-3@bulk.org", "password"),
+                user("limited-4@bulk.org", "password"),
+                user("limited-5@bulk.org", "password"),
+                user("limited-6@bulk.org", "password"),
+                user("limited-7@bulk.org", "password")).iterator(), "10.0.0.2");
+
+        assertThat(response.getRows()).extracting(BulkSignupRowDTO::getStatus).containsExactly(
+                BulkSignupStatus.CREATED, BulkSignupStatus.CREATED, BulkSignupStatus.CREATED,
+                BulkSignupStatus.CREATED, BulkSignupStatus.FAILED, BulkSignupStatus.FAILED);
+        assertThat(response.getError()).startsWith("Rate limited at user 4");
+        assertThat(userRepo.findByEmail("limited-5@bulk.org")).isEmpty();
+    }
+
+    private static SignupRequestDTO user(String email, String password) {
+        SignupRequestDTO user = new SignupRequestDTO();
+        user.setEmail(email);
+        user.setName(email);
+        user.setPassword(password);
+        return user;
+    }
+}
@@ -0,0 +1,129 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.UserAuthServiceApplication;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+import org.ruby.userauthservice.pojos.ValidationOutcome;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+Two instances in one JVM sharing one H2 database, like two nodes behind a load balancer
+ */
+class ClusterModeTests {
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    @BeforeAll
+    static void startNodes() {
+        String url = "jdbc:h2:mem:cluster-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER";
+        nodeA = start(url);
+        nodeB = start(url);
+    }
+
+    @AfterAll
+    static void stopNodes() {
+        if (nodeB != null) nodeB.close();
+        if (nodeA != null) nodeA.close();
+    }
+
+    @Test
+    void tokenIssuedOnOneNodeIsValidatedAndRevokedOnTheOther() throws InterruptedException {
+        IAuthService authServiceA = nodeA.getBean(IAuthService.class);
+        IAuthService authServiceB = nodeB.getBean(IAuthService.class);
+        authServiceA.signup("cluster@ruby.org", "cluster", "password");
+        String token = authServiceA.login("cluster@ruby.org", "password").getToken();
+
+        // B only knows the session from the DB and keeps it in its own cache
+        assertThat(authServiceB.validateToken(token).isValid()).isTrue();
+        assertThat(authServiceB.validateToken(token).isValid()).isTrue();
+
+        nodeA.getBean(SessionRevoker.class).revoke(TokenHasher.sha256Hex(token));
+        assertThat(authServiceA.validateToken(token).getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+
+        // revoke-flush-interval-ms (100) + poll-interval-ms (200), with plenty of slack
+        TokenValidationResult onB = authServiceB.validateToken(token);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (onB.isValid() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            onB = authServiceB.validateToken(token);
+        }
+        assertThat(onB.getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+    }
+
+    @Test
+    void logoutEverywhereOnOneNodeRevokesCachedSessionsOnTheOther() throws InterruptedException {
+        IAuthService authServiceA = nodeA.getBean(IAuthService.class);
+        IAuthService authServiceB = nodeB.getBean(IAuthService.class);
+        authServiceA.signup("cluster-all@ruby.org", "cluster", "password");
+        String token = authServiceA.login("cluster-all@ruby.org", "password").getToken();
+        assertThat(authServiceB.validateToken(token).isValid()).isTrue();
+
+        authServiceA.logoutAll(token);
+
+        TokenValidationResult onB = authServiceB.validateToken(token);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (onB.isValid() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            onB = authServiceB.validateToken(token);
+        }
+        assertThat(onB.getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+    }
+
+    @Test
+    void revocationCommittedAfterNewerRowsIsStillApplied() throws InterruptedException {
+        IAuthService authServiceA = nodeA.getBean(IAuthService.class);
+        IAuthService authServiceB = nodeB.getBean(IAuthService.class);
+        authServiceA.signup("cluster-late@ruby.org", "cluster", "password");
+        String token = authServiceA.login("cluster-late@ruby.org", "password").getToken();
+        assertThat(authServiceB.validateToken(token).isValid()).isTrue();
+        // let B poll past the newest rows first
+        Thread.sleep(500);
+
+        // a row whose id and created_at were taken well before it became visible (long transaction)
+        nodeA.getBean(JdbcTemplate.class).update(
+                "insert into session_revocation_log (id, token_hash, created_at) values (?, ?, ?)",
+                -1L, TokenHasher.sha256Hex(token), new Timestamp(System.currentTimeMillis() - 2000));
+
+        TokenValidationResult onB = authServiceB.validateToken(token);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (onB.isValid() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            onB = authServiceB.validateToken(token);
+        }
+        assertThat(onB.getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+    }
+
+    @Test
+    void signupOnOneNodeCanLogInOnTheOtherRightAway() {
+        nodeB.getBean(IAuthService.class).signup("cluster-signup@ruby.org", "cluster", "password");
+
+        // A's email filter has not refreshed yet, a miss must not mean "not registered"
+        assertThat(nodeA.getBean(IAuthService.class).login("cluster-signup@ruby.org", "password").getToken())
+                .isNotBlank();
+    }
+
+    private static ConfigurableApplicationContext start(String url) {
+        return new SpringApplicationBuilder(UserAuthServiceApplication.class)
+                .profiles("h2")
+                // command line args, properties() would lose against application.properties
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.jpa.hibernate.ddl-auto=update",
+                        "--auth.password.bcrypt-strength=4",
+                        "--auth.rate-limit.enabled=false",
+                        "--auth.cluster.enabled=true",
+                        "--auth.cluster.poll-interval-ms=200",
+                        "--auth.email-filter.refresh-interval-ms=60000",
+                        "--auth.session.revoke-flush-interval-ms=100");
+    }
+}
@@ -0,0 +1,35 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.exceptions.UserAlreadyExistException;
+import org.ruby.userauthservice.exceptions.UserNotRegisteredException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = "auth.password.bcrypt-strength=4")
+@ActiveProfiles("h2")
+class EmailFilterTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private EmailFilter emailFilter;
+
+    @Test
+    void unknownEmailsAreFilteredAndSignedUpEmailsAreNot() {
+        assertThat(emailFilter.mightExist("nobody@filter.org")).isFalse();
+        assertThatThrownBy(() -> authService.login("nobody@filter.org", "password"))
+                .isInstanceOf(UserNotRegisteredException.class);
+
+        authService.signup("Somebody@filter.org", "somebody", "password");
+        assertThat(emailFilter.mightExist("somebody@filter.org")).isTrue();
+        assertThat(authService.login("Somebody@filter.org", "password").getToken()).isNotBlank();
+        assertThatThrownBy(() -> authService.signup("Somebody@filter.org", "again", "password"))
+                .isInstanceOf(UserAlreadyExistException.class);
+    }
+}
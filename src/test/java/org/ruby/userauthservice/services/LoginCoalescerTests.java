@@ -0,0 +1,84 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.exceptions.AuthServiceBusyException;
+import org.ruby.userauthservice.exceptions.IncorrectPasswordException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginCoalescerTests {
+
+    @Test
+    void concurrentDuplicatesShareOneAuthentication() throws Exception {
+        LoginCoalescer loginCoalescer = new LoginCoalescer(new SimpleMeterRegistry(), true, 500, 100, 5000);
+        AtomicInteger authentications = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService clients = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                results.add(clients.submit(() -> loginCoalescer.login("dup@ruby.org", "password", () -> {
+                    await(release);
+                    return "token-" + authentications.incrementAndGet();
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo("token-1");
+            }
+        }
+        assertThat(authentications).hasValue(1);
+
+        // another password is another attempt
+        assertThat(loginCoalescer.login("dup@ruby.org", "other", () -> "token-other")).isEqualTo("token-other");
+    }
+
+    @Test
+    void successIsReusedOnlyWithinTheWindowAndFailuresNotAtAll() throws InterruptedException {
+        LoginCoalescer loginCoalescer = new LoginCoalescer(new SimpleMeterRegistry(), true, 100, 100, 5000);
+        assertThat(loginCoalescer.login("window@ruby.org", "password", () -> "first")).isEqualTo("first");
+        assertThat(loginCoalescer.login("window@ruby.org", "password", () -> "second")).isEqualTo("first");
+        Thread.sleep(150);
+        assertThat(loginCoalescer.login("window@ruby.org", "password", () -> "third")).isEqualTo("third");
+
+        assertThatThrownBy(() -> loginCoalescer.login("window@ruby.org", "wrong", () -> {
+            throw new IncorrectPasswordException("wrong");
+        })).isInstanceOf(IncorrectPasswordException.class);
+        assertThat(loginCoalescer.login("window@ruby.org", "wrong", () -> "retried")).isEqualTo("retried");
+    }
+
+    @Test
+    void waitingAttemptsGiveUpAfterTheHashingTimeout() throws Exception {
+        LoginCoalescer loginCoalescer = new LoginCoalescer(new SimpleMeterRegistry(), true, 500, 100, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService clients = Executors.newSingleThreadExecutor()) {
+            Future<String> leader = clients.submit(() -> loginCoalescer.login("slow@ruby.org", "password", () -> {
+                await(release);
+                return "token";
+            }));
+            Thread.sleep(50);
+            assertThatThrownBy(() -> loginCoalescer.login("slow@ruby.org", "password", () -> "not called"))
+                    .isInstanceOf(AuthServiceBusyException.class);
+            release.countDown();
+            assertThat(leader.get()).isEqualTo("token");
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
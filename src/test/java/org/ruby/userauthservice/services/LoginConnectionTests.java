@@ -0,0 +1,101 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.pojos.UserToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+Logins waiting for the hashing pool must not hold DB connections: with a pool of 2 connections and
+more logins than that stuck in matches(), validateToken still has to get through to the DB.
+ */
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.login.coalesce.enabled=false",
+        "auth.rate-limit.enabled=false", "auth.password.hashing.threads=2",
+        "spring.datasource.hikari.maximum-pool-size=2", "spring.datasource.hikari.minimum-idle=2",
+        "spring.datasource.hikari.connection-timeout=500"})
+@ActiveProfiles("h2")
+@Import(LoginConnectionTests.BlockingEncoderConfig.class)
+class LoginConnectionTests {
+
+    // closed while a test holds matches() calls in the hashing pool
+    private static volatile CountDownLatch gate = new CountDownLatch(0);
+    private static final AtomicInteger blockedMatches = new AtomicInteger();
+
+    @TestConfiguration
+    static class BlockingEncoderConfig {
+        @Bean
+        @Primary
+        PasswordEncoder blockingPasswordEncoder() {
+            BCryptPasswordEncoder bCrypt = new BCryptPasswordEncoder(4);
+            return new PasswordEncoder() {
+                @Override
+                public String encode(CharSequence rawPassword) {
+                    return bCrypt.encode(rawPassword);
+                }
+
+                @Override
+                public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                    blockedMatches.incrementAndGet();
+                    try {
+                        gate.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        blockedMatches.decrementAndGet();
+                    }
+                    return bCrypt.matches(rawPassword, encodedPassword);
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private IAuthService authService;
+
+    @Test
+    void validateTokenGetsAConnectionWhileLoginsWaitForHashing() throws Exception {
+        authService.signup("saturated@ruby.org", "saturated", "password");
+        String token = authService.login("saturated@ruby.org", "password").getToken();
+
+        gate = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<UserToken>> logins = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                logins.add(clients.submit(() -> authService.login("saturated@ruby.org", "password")));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (blockedMatches.get() < 2 && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertThat(blockedMatches.get()).isEqualTo(2);
+
+            // not cached yet, resolved against the DB
+            assertThat(authService.validateToken(token).isValid()).isTrue();
+
+            gate.countDown();
+            for (Future<UserToken> login : logins) {
+                assertThat(authService.validateToken(login.get(10, TimeUnit.SECONDS).getToken()).isValid()).isTrue();
+            }
+        } finally {
+            gate.countDown();
+            clients.shutdownNow();
+        }
+    }
+}
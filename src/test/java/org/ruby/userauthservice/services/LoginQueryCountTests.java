@@ -0,0 +1,42 @@
+package org.ruby.userauthservice.services;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.dtos.UserDTO;
+import org.ruby.userauthservice.dtos.UserMapper;
+import org.ruby.userauthservice.pojos.UserToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("h2")
+class LoginQueryCountTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void loginIsOneSelectAndTwoInserts() {
+        authService.signup("query-count@ruby.org", "query-count", "password");
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        UserToken userToken = authService.login("query-count@ruby.org", "password");
+        assertThat(Hibernate.isInitialized(userToken.getUser().getRoles())).isTrue();
+        // outside of any transaction, like the controller with open-in-view disabled
+        UserDTO userDTO = UserMapper.mapToDTO(userToken.getUser());
+
+        assertThat(userDTO.getRoles()).extracting("roleName").containsExactly("DEFAULT");
+        // three statements: select user + roles, insert session, insert refresh token (no rehash at this cost)
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,119 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.exceptions.InvalidRefreshTokenException;
+import org.ruby.userauthservice.exceptions.InvalidTokenException;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.pojos.UserToken;
+import org.ruby.userauthservice.pojos.ValidationOutcome;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.login.coalesce.enabled=false"})
+@ActiveProfiles("h2")
+class LogoutTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private SessionRepo sessionRepo;
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Test
+    void logoutEndsOnlyThatSession() {
+        authService.signup("logout@ruby.org", "logout", "password");
+        UserToken phone = authService.login("logout@ruby.org", "password");
+        UserToken laptop = authService.login("logout@ruby.org", "password");
+        assertThat(authService.validateToken(phone.getToken()).isValid()).isTrue();
+
+        authService.logout(phone.getToken(), phone.getRefreshToken());
+
+        assertThat(authService.validateToken(phone.getToken()).getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+        assertThat(state(phone.getToken())).isEqualTo(State.INACTIVE);
+        assertThatThrownBy(() -> authService.refresh(phone.getRefreshToken())).isInstanceOf(InvalidRefreshTokenException.class);
+        assertThat(authService.validateToken(laptop.getToken()).isValid()).isTrue();
+        // twice is fine
+        authService.logout(phone.getToken(), null);
+    }
+
+    @Test
+    void logoutDropsTheSessionFromTheCache() {
+        authService.signup("logout-cache@ruby.org", "cache", "password");
+        UserToken phone = authService.login("logout-cache@ruby.org", "password");
+        String tokenHash = TokenHasher.sha256Hex(phone.getToken());
+        assertThat(authService.validateToken(phone.getToken()).isValid()).isTrue();
+        assertThat(sessionCache.get(tokenHash)).isPresent();
+
+        authService.logout(phone.getToken(), null);
+
+        assertThat(sessionCache.get(tokenHash)).isEmpty();
+    }
+
+    @Test
+    void logoutEverywhereRevokesCachedSessionsAndRefreshTokens() {
+        authService.signup("everywhere@ruby.org", "everywhere", "password");
+        List<UserToken> devices = List.of(
+                authService.login("everywhere@ruby.org", "password"),
+                authService.login("everywhere@ruby.org", "password"),
+                authService.login("everywhere@ruby.org", "password"));
+        // warm the session cache
+        devices.forEach(device -> assertThat(authService.validateToken(device.getToken()).isValid()).isTrue());
+
+        assertThat(authService.logoutAll(devices.get(0).getToken())).isEqualTo(3);
+
+        for (UserToken device : devices) {
+            assertThat(authService.validateToken(device.getToken()).getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+            assertThat(state(device.getToken())).isEqualTo(State.INACTIVE);
+            assertThatThrownBy(() -> authService.refresh(device.getRefreshToken())).isInstanceOf(InvalidRefreshTokenException.class);
+        }
+        assertThat(authService.validateTokens(List.of(devices.get(1).getToken())).get(0).getOutcome())
+                .isEqualTo(ValidationOutcome.REVOKED);
+        assertThatThrownBy(() -> authService.logoutAll(devices.get(0).getToken())).isInstanceOf(InvalidTokenException.class);
+
+        // iat has second resolution, a login in the same second as the logout is issued in the next one
+        String fresh = authService.login("everywhere@ruby.org", "password").getToken();
+        assertThat(authService.validateToken(fresh).isValid()).isTrue();
+    }
+
+    @Test
+    void logoutWithTheAccessTokenAloneRevokesTheDevicesRefreshTokens() {
+        authService.signup("logout-family@ruby.org", "family", "password");
+        UserToken phone = authService.login("logout-family@ruby.org", "password");
+        UserToken laptop = authService.login("logout-family@ruby.org", "password");
+        UserToken rotated = authService.refresh(phone.getRefreshToken());
+
+        authService.logout(rotated.getToken(), null);
+
+        assertThatThrownBy(() -> authService.refresh(rotated.getRefreshToken())).isInstanceOf(InvalidRefreshTokenException.class);
+        assertThat(authService.refresh(laptop.getRefreshToken()).getToken()).isNotBlank();
+    }
+
+    @Test
+    void refreshTokenOfAnotherUserIsRejected() {
+        authService.signup("logout-mine@ruby.org", "mine", "password");
+        authService.signup("logout-theirs@ruby.org", "theirs", "password");
+        UserToken mine = authService.login("logout-mine@ruby.org", "password");
+        UserToken theirs = authService.login("logout-theirs@ruby.org", "password");
+
+        assertThatThrownBy(() -> authService.logout(mine.getToken(), theirs.getRefreshToken()))
+                .isInstanceOf(InvalidRefreshTokenException.class);
+
+        assertThat(authService.validateToken(mine.getToken()).isValid()).isTrue();
+        assertThat(authService.refresh(theirs.getRefreshToken()).getToken()).isNotBlank();
+    }
+
+    private State state(String token) {
+        return sessionRepo.findByTokenHash(TokenHasher.sha256Hex(token)).orElseThrow().getState();
+    }
+}
@@ -0,0 +1,58 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.ruby.userauthservice.utils.PasswordHashCalibrator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"auth.password.algorithm=argon2", "auth.password.argon2.iterations=1",
+        "auth.password.argon2.memory-kib=1024", "auth.password.bcrypt-strength=4"})
+@ActiveProfiles("h2")
+class PasswordRehashTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private EmailFilter emailFilter;
+
+    @Test
+    void legacyBcryptHashIsUpgradedOnLogin() {
+        // hash as stored before the {id} prefixes existed
+        User user = new User();
+        user.setEmail("legacy@ruby.org");
+        user.setName("legacy");
+        user.setPassword(new BCryptPasswordEncoder(4).encode("password"));
+        userRepo.save(user);
+        emailFilter.add("legacy@ruby.org");
+
+        authService.login("legacy@ruby.org", "password");
+        String upgraded = userRepo.findByEmail("legacy@ruby.org").orElseThrow().getPassword();
+        assertThat(upgraded).startsWith("{argon2}$argon2id$");
+
+        authService.login("legacy@ruby.org", "password");
+        assertThat(userRepo.findByEmail("legacy@ruby.org").orElseThrow().getPassword()).isEqualTo(upgraded);
+    }
+
+    @Test
+    void newPasswordsUseTheConfiguredAlgorithm() {
+        authService.signup("argon@ruby.org", "argon", "password");
+        assertThat(userRepo.findByEmail("argon@ruby.org").orElseThrow().getPassword()).startsWith("{argon2}");
+        assertThat(authService.login("argon@ruby.org", "password").getToken()).isNotBlank();
+    }
+
+    @Test
+    void calibrationStaysWithinBounds() {
+        assertThat(PasswordHashCalibrator.calibrate(BCryptPasswordEncoder::new, 4, 6, 0, 2.0)).isEqualTo(4);
+        assertThat(PasswordHashCalibrator.calibrate(BCryptPasswordEncoder::new, 4, 6, 60_000, 2.0)).isEqualTo(6);
+    }
+}
@@ -0,0 +1,57 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.exceptions.InvalidRefreshTokenException;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+import org.ruby.userauthservice.pojos.UserToken;
+import org.ruby.userauthservice.repositories.RefreshTokenRepo;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.token.access-ttl-ms=60000"})
+@ActiveProfiles("h2")
+class RefreshTokenTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private RefreshTokenRepo refreshTokenRepo;
+
+    @Test
+    void refreshRotatesTheRefreshTokenAndIssuesAShortLivedAccessToken() {
+        authService.signup("refresh@ruby.org", "refresh", "password");
+        UserToken loggedIn = authService.login("refresh@ruby.org", "password");
+        assertThat(loggedIn.getRefreshToken()).isNotBlank();
+
+        UserToken refreshed = authService.refresh(loggedIn.getRefreshToken());
+        assertThat(refreshed.getRefreshToken()).isNotEqualTo(loggedIn.getRefreshToken());
+        assertThat(refreshed.getToken()).isNotEqualTo(loggedIn.getToken());
+        assertThat(refreshed.getUser().getEmail()).isEqualTo("refresh@ruby.org");
+
+        TokenValidationResult result = authService.validateToken(refreshed.getToken());
+        assertThat(result.isValid()).isTrue();
+        assertThat(result.getExpiresAt() - System.currentTimeMillis()).isBetween(0L, 60000L);
+        // only the hash is stored
+        assertThat(refreshTokenRepo.findByTokenHash(TokenHasher.sha256Hex(refreshed.getRefreshToken()))).isPresent();
+    }
+
+    @Test
+    void reusingARotatedRefreshTokenRevokesTheWholeFamily() {
+        authService.signup("reuse@ruby.org", "reuse", "password");
+        String first = authService.login("reuse@ruby.org", "password").getRefreshToken();
+        String second = authService.refresh(first).getRefreshToken();
+
+        assertThatThrownBy(() -> authService.refresh(first)).isInstanceOf(InvalidRefreshTokenException.class);
+        assertThat(refreshTokenRepo.findByTokenHash(TokenHasher.sha256Hex(second)).orElseThrow().getState())
+                .isEqualTo(State.DELETED);
+        assertThatThrownBy(() -> authService.refresh(second)).isInstanceOf(InvalidRefreshTokenException.class);
+        assertThatThrownBy(() -> authService.refresh("not-a-refresh-token")).isInstanceOf(InvalidRefreshTokenException.class);
+    }
+}
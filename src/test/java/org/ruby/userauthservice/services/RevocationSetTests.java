@@ -0,0 +1,42 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.pojos.UserToken;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+// default stateful validation, no cluster: only the scheduled prune keeps the set bounded
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.login.coalesce.enabled=false",
+        "auth.token.access-ttl-ms=2000", "auth.revocation.prune-interval-ms=100"})
+@ActiveProfiles("h2")
+class RevocationSetTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private RevocationSet revocationSet;
+
+    @Test
+    void entriesOlderThanTheAccessTokenLifetimeAreEvicted() {
+        authService.signup("prune@ruby.org", "prune", "password");
+        UserToken loggedOut = authService.login("prune@ruby.org", "password");
+        UserToken everywhere = authService.login("prune@ruby.org", "password");
+        authService.logout(loggedOut.getToken(), null);
+        authService.logoutAll(everywhere.getToken());
+        Long userId = everywhere.getUser().getId();
+
+        assertThat(revocationSet.isRevoked(TokenHasher.sha256Hex(loggedOut.getToken()))).isTrue();
+        assertThat(revocationSet.isRevokedForUser(userId, 0)).isTrue();
+
+        await().untilAsserted(() -> {
+            assertThat(revocationSet.size()).isZero();
+            assertThat(revocationSet.isRevokedForUser(userId, 0)).isFalse();
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.models.Role;
+import org.ruby.userauthservice.repositories.RoleRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class RoleCatalogTests {
+
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    @Autowired
+    private RoleRepo roleRepo;
+
+    @Test
+    void concurrentGetOrCreateInsertsTheRoleOnce() throws Exception {
+        List<Callable<Role>> calls = IntStream.range(0, 8)
+                .<Callable<Role>>mapToObj(i -> () -> roleCatalog.getOrCreate("MENTOR"))
+                .toList();
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Long> ids = executor.invokeAll(calls).stream().map(RoleCatalogTests::id).distinct().toList();
+            assertThat(ids).hasSize(1);
+        }
+        assertThat(roleRepo.findByName("MENTOR")).isPresent();
+        assertThat(roleCatalog.scopeOf(roleCatalog.findByName("MENTOR").orElseThrow())).containsExactly("MENTOR");
+    }
+
+    private static Long id(Future<Role> future) {
+        try {
+            return future.get().getId();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.pojos.CachedSession;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class SessionCacheTests {
+
+    @Test
+    void hitReturnsTheCachedSessionUntilInvalidated() {
+        SessionCache sessionCache = new SessionCache(10, new SimpleMeterRegistry());
+        CachedSession cachedSession = session(1L, TimeUnit.HOURS.toMillis(1));
+        sessionCache.put("hash", cachedSession);
+
+        assertThat(sessionCache.get("hash")).containsSame(cachedSession);
+        assertThat(sessionCache.get("other")).isEmpty();
+
+        sessionCache.invalidate("hash");
+        assertThat(sessionCache.get("hash")).isEmpty();
+    }
+
+    @Test
+    void staysWithinTheMaximumSize() {
+        SessionCache sessionCache = new SessionCache(10, new SimpleMeterRegistry());
+        for (int i = 0; i < 100; i++) {
+            sessionCache.put("hash-" + i, session(i, TimeUnit.HOURS.toMillis(1)));
+        }
+
+        // Caffeine evicts in its maintenance cycle, reads trigger it as well
+        await().untilAsserted(() -> assertThat(IntStream.range(0, 100)
+                .filter(i -> sessionCache.get("hash-" + i).isPresent())
+                .count()).isLessThanOrEqualTo(10));
+    }
+
+    @Test
+    void everyEntryExpiresWithItsOwnToken() {
+        SessionCache sessionCache = new SessionCache(10, new SimpleMeterRegistry());
+        sessionCache.put("short", session(1L, 200));
+        sessionCache.put("long", session(2L, TimeUnit.HOURS.toMillis(1)));
+        assertThat(sessionCache.get("short")).isPresent();
+
+        await().untilAsserted(() -> assertThat(sessionCache.get("short")).isEmpty());
+        assertThat(sessionCache.get("long")).isPresent();
+    }
+
+    @Test
+    void maxSizeZeroDisablesTheCache() {
+        SessionCache sessionCache = new SessionCache(0, new SimpleMeterRegistry());
+        sessionCache.put("hash", session(1L, TimeUnit.HOURS.toMillis(1)));
+
+        assertThat(sessionCache.get("hash")).isEmpty();
+    }
+
+    private static CachedSession session(long sessionId, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        return new CachedSession(sessionId, 1L, List.of("DEFAULT"), now + ttlMillis, now);
+    }
+}
@@ -0,0 +1,45 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("h2")
+class SessionRevokerTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private SessionRevoker sessionRevoker;
+
+    @Autowired
+    private SessionRepo sessionRepo;
+
+    @Test
+    void repeatedRevocationsCoalesceIntoOneConditionalUpdate() {
+        authService.signup("revoker@ruby.org", "revoker", "password");
+        String token = authService.login("revoker@ruby.org", "password").getToken();
+        String tokenHash = TokenHasher.sha256Hex(token);
+
+        for (int i = 0; i < 100; i++) {
+            sessionRevoker.revoke(tokenHash);
+        }
+        assertThat(authService.validateToken(token).isValid()).isFalse();
+
+        sessionRevoker.flush();
+        assertThat(sessionRepo.findByTokenHash(tokenHash)).get().extracting("state").isEqualTo(State.INACTIVE);
+        // already INACTIVE, the conditional update does not touch the row again
+        assertThat(sessionRepo.deactivateByTokenHashes(List.of(tokenHash), new Date())).isZero();
+    }
+}
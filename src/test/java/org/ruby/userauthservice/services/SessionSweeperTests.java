@@ -0,0 +1,110 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.migrations.SessionExpiresAtBackfill;
+import org.ruby.userauthservice.models.Session;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.repositories.RefreshTokenRepo;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.ruby.userauthservice.repositories.UserRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// same properties as LogoutTests, the context is shared; the sweeper under test is a local one with batches of 2
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.login.coalesce.enabled=false"})
+@ActiveProfiles("h2")
+class SessionSweeperTests {
+
+    @Autowired
+    private SessionRepo sessionRepo;
+
+    @Autowired
+    private RefreshTokenRepo refreshTokenRepo;
+
+    @Autowired
+    private UserRepo userRepo;
+
+    @Autowired
+    private SessionExpiresAtBackfill sessionExpiresAtBackfill;
+
+    private SessionSweeper sessionSweeper;
+
+    @BeforeEach
+    void setUp() {
+        sessionSweeper = new SessionSweeper(sessionRepo, refreshTokenRepo, new SimpleMeterRegistry(), 2, 100, 0, 168);
+    }
+
+    @Test
+    void expiresPastSessionsAndPurgesOnesOutsideRetention() {
+        User user = user("sweeper@ruby.org");
+        long now = System.currentTimeMillis();
+        Session live = session(user, "live", State.ACTIVE, now + TimeUnit.HOURS.toMillis(1));
+        Session expired = session(user, "expired", State.ACTIVE, now - TimeUnit.MINUTES.toMillis(1));
+        Session expiredToo = session(user, "expired-too", State.ACTIVE, now - TimeUnit.MINUTES.toMillis(2));
+        Session old = session(user, "old", State.INACTIVE, now - TimeUnit.DAYS.toMillis(30));
+
+        sessionSweeper.sweep();
+
+        assertThat(sessionRepo.findById(live.getId())).get().extracting("state").isEqualTo(State.ACTIVE);
+        assertThat(sessionRepo.findById(expired.getId())).get().extracting("state").isEqualTo(State.INACTIVE);
+        assertThat(sessionRepo.findById(expiredToo.getId())).get().extracting("state").isEqualTo(State.INACTIVE);
+        assertThat(sessionRepo.findById(old.getId())).isEmpty();
+    }
+
+    @Test
+    void keysetWalksPastRowsSharingOneExpiresAt() {
+        User user = user("sweeper-ties@ruby.org");
+        long expiresAt = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1);
+        // more rows with the same expires_at than fit in one batch
+        Session first = session(user, "tie-1", State.ACTIVE, expiresAt);
+        Session second = session(user, "tie-2", State.ACTIVE, expiresAt);
+        Session third = session(user, "tie-3", State.ACTIVE, expiresAt);
+
+        sessionSweeper.sweep();
+
+        for (Session session : new Session[]{first, second, third}) {
+            assertThat(sessionRepo.findById(session.getId())).get().extracting("state").isEqualTo(State.INACTIVE);
+        }
+    }
+
+    @Test
+    void sessionsWithoutExpiresAtAreBackfilledAndExpired() {
+        User user = user("sweeper-legacy@ruby.org");
+        Session legacy = session(user, "legacy", State.ACTIVE, 0);
+        legacy.setExpiresAt(null);
+        sessionRepo.save(legacy);
+
+        sessionExpiresAtBackfill.run(null);
+        sessionSweeper.sweep();
+
+        Session swept = sessionRepo.findById(legacy.getId()).orElseThrow();
+        assertThat(swept.getExpiresAt()).isNotNull();
+        assertThat(swept.getState()).isEqualTo(State.INACTIVE);
+    }
+
+    private User user(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setState(State.ACTIVE);
+        return userRepo.save(user);
+    }
+
+    private Session session(User user, String tokenHash, State state, long expiresAt) {
+        Session session = new Session();
+        session.setUser(user);
+        session.setToken(tokenHash);
+        session.setTokenHash(tokenHash);
+        session.setState(state);
+        session.setExpiresAt(new Date(expiresAt));
+        return sessionRepo.save(session);
+    }
+}
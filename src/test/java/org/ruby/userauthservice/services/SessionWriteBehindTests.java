@@ -0,0 +1,109 @@
+package org.ruby.userauthservice.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.exceptions.InvalidRefreshTokenException;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.pojos.UserToken;
+import org.ruby.userauthservice.pojos.ValidationOutcome;
+import org.ruby.userauthservice.repositories.SessionRepo;
+import org.ruby.userauthservice.utils.TokenHasher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = {
+        "auth.session.write-behind.enabled=true",
+        "auth.session.write-behind.flush-interval-ms=200",
+        "auth.password.bcrypt-strength=4",
+        "auth.login.coalesce.enabled=false"
+})
+@ActiveProfiles("h2")
+class SessionWriteBehindTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private SessionRepo sessionRepo;
+
+    @Autowired
+    private SessionWriteBehind sessionWriteBehind;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void aRetriedBatchSkipsSessionsThatAreAlreadyCommitted() {
+        Long userId = authService.signup("wb-retry@ruby.org", "wb", "password").getId();
+        Date expiresAt = new Date(System.currentTimeMillis() + 60000);
+        double droppedBefore = meterRegistry.counter("auth.session.write-behind.dropped").count();
+        // as if an earlier attempt had committed this row but reported a failure
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("insert into session (created_at, last_updated_at, state, token, token_hash, user_id, expires_at) " +
+                "values (?, ?, 'ACTIVE', 'committed-token', 'committed-hash', ?, ?)", now, now, userId, new Timestamp(expiresAt.getTime()));
+
+        sessionWriteBehind.enqueue("committed-token", "committed-hash", userId, expiresAt, null);
+        sessionWriteBehind.enqueue("queued-token", "queued-hash", userId, expiresAt, null);
+
+        await().untilAsserted(() -> assertThat(sessionWriteBehind.isPending("queued-hash")).isFalse());
+        assertThat(sessionWriteBehind.isPending("committed-hash")).isFalse();
+        assertThat(sessionRepo.findByTokenHash("queued-hash")).isPresent();
+        assertThat(meterRegistry.counter("auth.session.write-behind.dropped").count()).isEqualTo(droppedBefore);
+    }
+
+    @Test
+    void tokenIsValidBeforeAndAfterTheSessionIsFlushed() {
+        authService.signup("write-behind@ruby.org", "wb", "password");
+        String token = authService.login("write-behind@ruby.org", "password").getToken();
+        String tokenHash = TokenHasher.sha256Hex(token);
+
+        assertThat(authService.validateToken(token).isValid()).isTrue();
+
+        await().untilAsserted(() -> assertThat(sessionRepo.findByTokenHash(tokenHash)).isPresent());
+        assertThat(authService.validateToken(token).isValid()).isTrue();
+    }
+
+    @Test
+    void sessionLoggedOutBeforeTheFlushIsInsertedInactive() {
+        authService.signup("wb-logout@ruby.org", "wb", "password");
+        UserToken userToken = authService.login("wb-logout@ruby.org", "password");
+        String token = userToken.getToken();
+        String tokenHash = TokenHasher.sha256Hex(token);
+
+        // the refresh token family is found through the pending session
+        authService.logout(token, null);
+        assertThatThrownBy(() -> authService.refresh(userToken.getRefreshToken()))
+                .isInstanceOf(InvalidRefreshTokenException.class);
+
+        await().untilAsserted(() -> assertThat(sessionRepo.findByTokenHash(tokenHash)).isPresent());
+        assertThat(sessionRepo.findByTokenHash(tokenHash).orElseThrow().getState()).isEqualTo(State.INACTIVE);
+        assertThat(authService.validateToken(token).getOutcome()).isEqualTo(ValidationOutcome.REVOKED);
+    }
+
+    @Test
+    void sessionsLoggedOutEverywhereBeforeTheFlushAreInsertedInactive() {
+        authService.signup("wb-everywhere@ruby.org", "wb", "password");
+        String first = authService.login("wb-everywhere@ruby.org", "password").getToken();
+        String second = authService.login("wb-everywhere@ruby.org", "password").getToken();
+
+        authService.logoutAll(first);
+
+        for (String token : new String[]{first, second}) {
+            String tokenHash = TokenHasher.sha256Hex(token);
+            await().untilAsserted(() -> assertThat(sessionRepo.findByTokenHash(tokenHash)).isPresent());
+            assertThat(sessionRepo.findByTokenHash(tokenHash).orElseThrow().getState()).isEqualTo(State.INACTIVE);
+        }
+    }
+}
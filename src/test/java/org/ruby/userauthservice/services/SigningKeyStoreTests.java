@@ -0,0 +1,82 @@
+package org.ruby.userauthservice.services;
+
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.controllers.JwksController;
+import org.ruby.userauthservice.models.SigningKey;
+import org.ruby.userauthservice.models.State;
+import org.ruby.userauthservice.repositories.SigningKeyRepo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.Base64;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.signing.publish-ahead-ms=0",
+        "auth.session-cache.max-size=0", "auth.login.coalesce.enabled=false"})
+@ActiveProfiles("h2")
+class SigningKeyStoreTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private SigningKeyStore signingKeyStore;
+
+    @Autowired
+    private SigningKeyRepo signingKeyRepo;
+
+    @Autowired
+    private JwksController jwksController;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void rotationKeepsOldTokensValidUntilTheKeyIsRetired() {
+        authService.signup("keys@ruby.org", "keys", "password");
+        String oldToken = authService.login("keys@ruby.org", "password").getToken();
+        String oldKid = kid(oldToken);
+
+        signingKeyStore.rotate();
+        String newToken = authService.login("keys@ruby.org", "password").getToken();
+
+        assertThat(kid(newToken)).isNotEqualTo(oldKid);
+        assertThat(authService.validateToken(oldToken).isValid()).isTrue();
+        assertThat(authService.validateToken(newToken).isValid()).isTrue();
+        JsonNode jwks = objectMapper.readTree(jwksController.jwks().getBody());
+        assertThat(jwks.get("keys")).hasSize(2);
+        assertThat(jwks.get("keys").get(0).has("d")).isFalse();
+
+        SigningKey oldKey = signingKeyRepo.findByStateOrderByActivatesAtAsc(State.ACTIVE).get(0);
+        assertThat(oldKey.getKid()).isEqualTo(oldKid);
+        oldKey.setRetireAfter(new Date(System.currentTimeMillis() - 1));
+        signingKeyRepo.save(oldKey);
+        signingKeyStore.maintain();
+
+        assertThat(authService.validateToken(oldToken).isValid()).isFalse();
+        assertThat(authService.validateToken(newToken).isValid()).isTrue();
+        assertThat(objectMapper.readTree(jwksController.jwks().getBody()).get("keys")).hasSize(1);
+    }
+
+    @Test
+    void privateKeysStayOutOfLogsAndNeedAnEncryptionKeyOutsideLocalProfiles() {
+        SigningKey key = signingKeyRepo.findByStateOrderByActivatesAtAsc(State.ACTIVE).get(0);
+        assertThat(key.toString()).contains(key.getKid()).doesNotContain(key.getPrivateKey());
+
+        assertThatThrownBy(() -> new SigningKeyStore(signingKeyRepo, new TokenLifetimes(900000, 900000),
+                "ES256", 0, 0, "", false))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("auth.signing.key-encryption-key");
+    }
+
+    private String kid(String token) {
+        byte[] header = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+        return objectMapper.readTree(header).get("kid").asString();
+    }
+}
@@ -0,0 +1,145 @@
+package org.ruby.userauthservice.services;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import org.junit.jupiter.api.Test;
+import org.ruby.userauthservice.controllers.JwksController;
+import org.ruby.userauthservice.models.User;
+import org.ruby.userauthservice.pojos.TokenValidationResult;
+import org.ruby.userauthservice.pojos.ValidationOutcome;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+// same context as RevocationSetTests, a 2 s access token lifetime
+@SpringBootTest(properties = {"auth.password.bcrypt-strength=4", "auth.login.coalesce.enabled=false",
+        "auth.token.access-ttl-ms=2000", "auth.revocation.prune-interval-ms=100"})
+@ActiveProfiles("h2")
+class TokenEngineTests {
+
+    @Autowired
+    private IAuthService authService;
+
+    @Autowired
+    private JwksController jwksController;
+
+    @Autowired
+    private TokenEngine tokenEngine;
+
+    @Autowired
+    private SigningKeyStore signingKeyStore;
+
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    @Test
+    void verifyReturnsTheClaimsIssued() {
+        long now = System.currentTimeMillis();
+        Claims claims = tokenEngine.verify(tokenEngine.issue(user(), now));
+
+        assertThat(TokenValidationResult.userIdOf(claims)).isEqualTo(42L);
+        assertThat(TokenValidationResult.scopeOf(claims)).containsExactly("DEFAULT");
+        assertThat(claims.getIssuer()).isEqualTo(TokenEngine.ISSUER);
+        assertThat(TokenEngine.issuedAt(claims)).isEqualTo(now / 1000 * 1000);
+        assertThat(TokenEngine.expiresAt(claims)).isEqualTo((now + 2000) / 1000 * 1000);
+    }
+
+    @Test
+    void tamperedTokensAreRejected() {
+        String[] parts = tokenEngine.issue(user(), System.currentTimeMillis()).split("\\.");
+        String otherUser = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                        .replace("\"userId\":42", "\"userId\":43").getBytes(StandardCharsets.UTF_8));
+        int at = parts[2].length() / 2;
+        String otherSignature = parts[2].substring(0, at) + (parts[2].charAt(at) == 'A' ? 'B' : 'A')
+                + parts[2].substring(at + 1);
+        assertThat(otherUser).isNotEqualTo(parts[1]);
+
+        assertThatThrownBy(() -> tokenEngine.verify(parts[0] + '.' + otherUser + '.' + parts[2]))
+                .isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> tokenEngine.verify(parts[0] + '.' + parts[1] + '.' + otherSignature))
+                .isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> tokenEngine.verify(parts[0] + '.' + parts[1] + '.'))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void theKidPicksTheVerificationKey() {
+        SigningKeyStore.LoadedKey signer = signingKeyStore.signer();
+        KeyPair foreignKeys = signer.algorithm().keyPair().build();
+
+        // right kid, someone else's key
+        assertThatThrownBy(() -> tokenEngine.verify(foreignToken(signer.kid(), foreignKeys, signer)))
+                .isInstanceOf(JwtException.class);
+        assertThatThrownBy(() -> tokenEngine.verify(foreignToken("unknown-kid", foreignKeys, signer)))
+                .isInstanceOf(JwtException.class)
+                .hasMessageContaining("unknown-kid");
+        assertThatThrownBy(() -> tokenEngine.verify(foreignToken(null, foreignKeys, signer)))
+                .isInstanceOf(JwtException.class);
+        // our own private key under a kid we never published
+        assertThatThrownBy(() -> tokenEngine.verify(Jwts.builder().header().keyId("unknown-kid").and()
+                .claim("userId", 42).signWith(signer.privateKey(), signer.algorithm()).compact()))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void aStockParserWithTheJwksKeyReadsTheTimesAsSecondsAndEnforcesExp() {
+        authService.signup("interop@ruby.org", "interop", "password");
+        long before = System.currentTimeMillis();
+        String token = authService.login("interop@ruby.org", "password").getToken();
+
+        // what a resource server does: JWKS from /.well-known/jwks.json, nothing of ours on the classpath
+        JwkSet jwks = Jwks.setParser().build().parse(jwksController.jwks().getBody());
+        JwtParser parser = Jwts.parser().keyLocator(new LocatorAdapter<Key>() {
+            @Override
+            protected Key locate(JwsHeader header) {
+                return jwks.getKeys().stream()
+                        .filter(jwk -> jwk.getId().equals(header.getKeyId()))
+                        .findFirst().map(Jwk::toKey).orElseThrow();
+            }
+        }).build();
+
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        assertThat(claims.getIssuedAt().getTime()).isBetween(before - 1000, System.currentTimeMillis());
+        assertThat(claims.getExpiration().getTime() - claims.getIssuedAt().getTime()).isEqualTo(2000L);
+        assertThat(claims.getIssuer()).isEqualTo(TokenEngine.ISSUER);
+
+        await().untilAsserted(() -> assertThatThrownBy(() -> parser.parseSignedClaims(token))
+                .isInstanceOf(ExpiredJwtException.class));
+        assertThat(authService.validateToken(token).getOutcome()).isEqualTo(ValidationOutcome.EXPIRED);
+    }
+
+    private User user() {
+        User user = new User();
+        user.setId(42L);
+        user.setRoles(List.of(roleCatalog.getOrCreate("DEFAULT")));
+        return user;
+    }
+
+    private static String foreignToken(String kid, KeyPair keys, SigningKeyStore.LoadedKey signer) {
+        var builder = Jwts.builder();
+        if (kid != null) builder.header().keyId(kid);
+        return builder.claim("userId", 42)
+                .issuer(TokenEngine.ISSUER)
+                .signWith(keys.getPrivate(), signer.algorithm())
+                .compact();
+    }
+}
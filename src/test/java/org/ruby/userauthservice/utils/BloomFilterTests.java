@@ -0,0 +1,24 @@
+package org.ruby.userauthservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterTests {
+
+    @Test
+    void neverForgetsAnEmailAndKeepsFalsePositivesNearTheTarget() {
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            bloomFilter.put("user" + i + "@ruby.org");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(bloomFilter.mightContain("user" + i + "@ruby.org")).isTrue();
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (bloomFilter.mightContain("stranger" + i + "@ruby.org")) falsePositives++;
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+}
@@ -0,0 +1,46 @@
+package org.ruby.userauthservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTests {
+
+    @Test
+    void allowsTheBurstThenRejectsWithTheTimeToTheNextPermit() {
+        RateLimiter rateLimiter = new RateLimiter(1, 3, 10);
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire("10.0.0.1")).isZero();
+        }
+        long waitNanos = rateLimiter.tryAcquire("10.0.0.1");
+        assertThat(waitNanos).isPositive().isLessThanOrEqualTo(1_000_000_000L);
+        // other keys have their own bucket
+        assertThat(rateLimiter.tryAcquire("10.0.0.2")).isZero();
+    }
+
+    @Test
+    void takesSeveralPermitsAtOnceOrNone() {
+        RateLimiter rateLimiter = new RateLimiter(1, 5, 10);
+        assertThat(rateLimiter.tryAcquire("10.0.0.1", 3)).isZero();
+        // only 2 left, the 3 are not taken
+        assertThat(rateLimiter.tryAcquire("10.0.0.1", 3)).isPositive();
+        assertThat(rateLimiter.tryAcquire("10.0.0.1", 2)).isZero();
+    }
+
+    @Test
+    void idleKeysAreEvictedAndAFullTableFailsOpen() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(1000, 1, 2);
+        rateLimiter.tryAcquire("a");
+        rateLimiter.tryAcquire("b");
+        Thread.sleep(5);
+        assertThat(rateLimiter.evictIdle()).isEqualTo(2);
+        assertThat(rateLimiter.size()).isZero();
+
+        RateLimiter slow = new RateLimiter(0.001, 1, 2);
+        slow.tryAcquire("a");
+        slow.tryAcquire("b");
+        assertThat(slow.tryAcquire("c")).isZero();
+        assertThat(slow.size()).isEqualTo(2);
+        assertThat(slow.untracked()).isEqualTo(1);
+    }
+}